@@ -0,0 +1,7 @@
+package com.example.Keycloak.cache;
+
+/**
+ * A document changed somewhere in the cluster; documentId null means drop everything cached for the collection
+ */
+public record CacheInvalidation(String collection, String documentId) {
+}
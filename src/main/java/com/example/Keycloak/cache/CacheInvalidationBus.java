@@ -0,0 +1,68 @@
+package com.example.Keycloak.cache;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Propagates cache evictions between backend replicas
+ * Caches register an evictor per Mongo collection; the configured transport
+ * (app.cache.invalidation.transport: mongo or local) delivers invalidations to them
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CacheInvalidationBus {
+
+    private final CacheInvalidationTransport transport;
+
+    private final Map<String, List<Consumer<String>>> evictors = new ConcurrentHashMap<>();
+
+    /**
+     * @param evictor called with the changed document id, or null when the whole cache must be dropped
+     */
+    public void register(String collection, Consumer<String> evictor) {
+        evictors.computeIfAbsent(collection, key -> new CopyOnWriteArrayList<>()).add(evictor);
+    }
+
+    /**
+     * Announces a write made by this replica
+     */
+    public void publish(String collection, String documentId) {
+        transport.publish(new CacheInvalidation(collection, documentId));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        transport.start(evictors.keySet(), this::dispatch);
+        log.info("Cache invalidation bus started with {} for {}", transport.getClass().getSimpleName(), evictors.keySet());
+    }
+
+    @PreDestroy
+    public void stop() {
+        transport.stop();
+    }
+
+    private void dispatch(CacheInvalidation invalidation) {
+        List<Consumer<String>> registered = evictors.get(invalidation.collection());
+        if (registered == null) {
+            return;
+        }
+        for (Consumer<String> evictor : registered) {
+            try {
+                evictor.accept(invalidation.documentId());
+            } catch (Exception e) {
+                log.warn("Cache eviction for {} {} failed: {}", invalidation.collection(), invalidation.documentId(), e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.Keycloak.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries cache invalidations between backend replicas
+ */
+public interface CacheInvalidationTransport {
+
+    /**
+     * Starts delivering invalidations for the given collections, including ones caused by this replica
+     */
+    void start(Iterable<String> collections, Consumer<CacheInvalidation> listener);
+
+    /**
+     * Announces a local write; transports that observe the database directly can ignore it
+     */
+    void publish(CacheInvalidation invalidation);
+
+    void stop();
+}
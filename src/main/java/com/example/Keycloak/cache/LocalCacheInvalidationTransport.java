@@ -0,0 +1,31 @@
+package com.example.Keycloak.cache;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Consumer;
+
+/**
+ * Default in-process transport for a single replica: published invalidations are delivered straight back
+ */
+@Component
+@ConditionalOnProperty(name = "app.cache.invalidation.transport", havingValue = "local", matchIfMissing = true)
+public class LocalCacheInvalidationTransport implements CacheInvalidationTransport {
+
+    private volatile Consumer<CacheInvalidation> listener = invalidation -> { };
+
+    @Override
+    public void start(Iterable<String> collections, Consumer<CacheInvalidation> listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void publish(CacheInvalidation invalidation) {
+        listener.accept(invalidation);
+    }
+
+    @Override
+    public void stop() {
+        listener = invalidation -> { };
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.Keycloak.cache;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Opt-in transport for multi-replica deployments: a MongoDB change stream on the cached collections is the invalidation source
+ * Every replica watches the same stream, so a write on any replica evicts the entry everywhere
+ * without the writers having to publish anything; needs a replica set (or sharded cluster), a standalone mongod
+ * fails startup rather than leaving caches silently stale (docker-compose runs a single-node replica set)
+ * The stream resumes from its last token after errors; while it is down, cache TTLs bound staleness
+ */
+@Component
+@ConditionalOnProperty(name = "app.cache.invalidation.transport", havingValue = "mongo")
+@RequiredArgsConstructor
+@Slf4j
+public class MongoChangeStreamInvalidationTransport implements CacheInvalidationTransport {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${app.cache.invalidation.retry-delay-ms:5000}")
+    private long retryDelayMillis;
+
+    // Server error for change streams on a standalone mongod
+    private static final int NOT_A_REPLICA_SET = 40573;
+
+    private volatile boolean running;
+    private volatile MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor;
+    private Thread watcher;
+
+    @Override
+    public void start(Iterable<String> collections, Consumer<CacheInvalidation> listener) {
+        requireReplicaSet();
+        List<String> names = new ArrayList<>();
+        collections.forEach(names::add);
+        running = true;
+        watcher = new Thread(() -> watch(names, listener), "cache-invalidation-change-stream");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    @Override
+    public void publish(CacheInvalidation invalidation) {
+        // The change stream reports the write to every replica, this one included
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> current = cursor;
+        if (current != null) {
+            current.close();
+        }
+        if (watcher != null) {
+            watcher.interrupt();
+        }
+    }
+
+    private void requireReplicaSet() {
+        Document hello;
+        try {
+            hello = mongoTemplate.executeCommand(new Document("hello", 1));
+        } catch (Exception e) {
+            // Unreachable for now, the watcher keeps retrying until it is back
+            log.warn("⚠️ Could not check the MongoDB topology: {}", e.getMessage());
+            return;
+        }
+        // setName on replica set members, msg isdbgrid on a mongos
+        if (hello.get("setName") == null && !"isdbgrid".equals(hello.get("msg"))) {
+            throw new IllegalStateException("MongoDB is a standalone server, change streams need a replica set; "
+                    + "run it as a (single-node) replica set or set CACHE_INVALIDATION_TRANSPORT=local for a single replica");
+        }
+    }
+
+    private void watch(List<String> collections, Consumer<CacheInvalidation> listener) {
+        BsonDocument resumeToken = null;
+        while (running) {
+            try {
+                var stream = mongoTemplate.getDb()
+                        .watch(List.of(Aggregates.match(Filters.in("ns.coll", collections))));
+                if (resumeToken != null) {
+                    stream = stream.resumeAfter(resumeToken);
+                } else {
+                    // Whatever was cached before the stream (re)started may have missed changes
+                    collections.forEach(collection -> listener.accept(new CacheInvalidation(collection, null)));
+                }
+                cursor = stream.cursor();
+                log.info("Cache invalidation change stream watching {}", collections);
+                while (running) {
+                    ChangeStreamDocument<Document> change = cursor.tryNext();
+                    if (change == null) {
+                        continue;
+                    }
+                    resumeToken = change.getResumeToken();
+                    dispatch(change, listener);
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                if (e instanceof MongoCommandException commandException) {
+                    if (commandException.getErrorCode() == NOT_A_REPLICA_SET) {
+                        log.error("MongoDB is no longer a replica set, cross-replica cache invalidation is off; cache TTLs bound staleness");
+                        return;
+                    }
+                    // Resume token may have rolled off the oplog, start over with a full flush
+                    resumeToken = null;
+                }
+                log.warn("⚠️ Cache invalidation change stream failed, retrying in {}ms: {}", retryDelayMillis, e.getMessage());
+                try {
+                    Thread.sleep(retryDelayMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            } finally {
+                MongoChangeStreamCursor<ChangeStreamDocument<Document>> current = cursor;
+                if (current != null) {
+                    current.close();
+                    cursor = null;
+                }
+            }
+        }
+    }
+
+    private void dispatch(ChangeStreamDocument<Document> change, Consumer<CacheInvalidation> listener) {
+        String collection = change.getNamespace() != null ? change.getNamespace().getCollectionName() : null;
+        switch (change.getOperationType()) {
+            // New documents cannot be cached yet, misses are never cached
+            case INSERT -> { }
+            case UPDATE, REPLACE, DELETE -> {
+                BsonValue id = change.getDocumentKey() != null ? change.getDocumentKey().get("_id") : null;
+                listener.accept(new CacheInvalidation(collection, id == null ? null : idToString(id)));
+            }
+            // drop, rename, invalidate and anything newer: flush everything
+            default -> {
+                if (collection != null) {
+                    listener.accept(new CacheInvalidation(collection, null));
+                }
+            }
+        }
+    }
+
+    private static String idToString(BsonValue id) {
+        return id.isObjectId() ? id.asObjectId().getValue().toHexString() : id.isString() ? id.asString().getValue() : id.toString();
+    }
+}
@@ -1,21 +1,60 @@
 package com.example.Keycloak.config;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.oauth2.client.oidc.userinfo.OidcUserRequest;
 import org.springframework.security.oauth2.client.oidc.userinfo.OidcUserService;
 import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.oidc.user.DefaultOidcUser;
 import org.springframework.security.oauth2.core.oidc.user.OidcUser;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Set;
 
 @Component
+@RequiredArgsConstructor
 public class CustomOidcUserService extends OidcUserService {
 
+    private final ObjectMapper objectMapper;
+
     @Override
     public OidcUser loadUser(OidcUserRequest userRequest) throws OAuth2AuthenticationException {
         OidcUser oidcUser = super.loadUser(userRequest);
 
-        // You can add custom logic here to process the user
-        // For now, we'll just return the user as-is
+        // Keycloak realm roles become ROLE_<name> authorities, e.g. for the admin-only API endpoints
+        Set<GrantedAuthority> authorities = new HashSet<>(oidcUser.getAuthorities());
+        for (String role : realmRoles(userRequest.getAccessToken().getTokenValue())) {
+            authorities.add(new SimpleGrantedAuthority("ROLE_" + role));
+        }
+
+        String nameAttribute = userRequest.getClientRegistration().getProviderDetails()
+                .getUserInfoEndpoint().getUserNameAttributeName();
+        return StringUtils.hasText(nameAttribute)
+                ? new DefaultOidcUser(authorities, oidcUser.getIdToken(), oidcUser.getUserInfo(), nameAttribute)
+                : new DefaultOidcUser(authorities, oidcUser.getIdToken(), oidcUser.getUserInfo());
+    }
 
-        return oidcUser;
+    // Keycloak only puts realm_access into the access token; it was just received from the token endpoint
+    // over the back channel, so the payload is read without verifying the signature again
+    private Set<String> realmRoles(String accessToken) {
+        Set<String> roles = new HashSet<>();
+        String[] parts = accessToken.split("\\.");
+        if (parts.length < 2) {
+            return roles;
+        }
+        try {
+            JsonNode claims = objectMapper.readTree(Base64.getUrlDecoder().decode(parts[1]));
+            claims.path("realm_access").path("roles").forEach(role -> roles.add(role.asText()));
+        } catch (IOException | IllegalArgumentException e) {
+            // Not a JWT, the user keeps the scope authorities only
+        }
+        return roles;
     }
 }
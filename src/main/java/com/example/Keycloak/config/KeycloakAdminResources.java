@@ -0,0 +1,117 @@
+package com.example.Keycloak.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.resource.RealmResource;
+import org.keycloak.admin.client.resource.UsersResource;
+import org.keycloak.admin.client.token.TokenManager;
+import org.keycloak.representations.AccessTokenResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Shared access to the Keycloak admin API
+ * - realm and users resource proxies are created once per realm instead of on every call
+ * - the admin access token is refreshed in the background before it expires, so no request pays the token round trip
+ * - every call is timed as keycloak.admin.requests{operation,outcome} with a latency histogram
+ */
+@Component
+@Slf4j
+public class KeycloakAdminResources {
+
+    private final Keycloak keycloakAdminClient;
+    private final MeterRegistry meterRegistry;
+    private final long refreshSkewMillis;
+    private final long retryDelayMillis;
+
+    private final Map<String, RealmResource> realms = new ConcurrentHashMap<>();
+    private final Map<String, UsersResource> usersResources = new ConcurrentHashMap<>();
+
+    // 0 until the first token has been obtained
+    private volatile long refreshAt;
+
+    public KeycloakAdminResources(Keycloak keycloakAdminClient,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${keycloak.admin.token.refresh-skew-ms:40000}") long refreshSkewMillis,
+                                  @Value("${keycloak.admin.token.retry-delay-ms:5000}") long retryDelayMillis) {
+        this.keycloakAdminClient = keycloakAdminClient;
+        this.meterRegistry = meterRegistry;
+        this.refreshSkewMillis = refreshSkewMillis;
+        this.retryDelayMillis = retryDelayMillis;
+    }
+
+    public RealmResource realm(String realm) {
+        return realms.computeIfAbsent(realm, keycloakAdminClient::realm);
+    }
+
+    public UsersResource users(String realm) {
+        return usersResources.computeIfAbsent(realm, key -> realm(key).users());
+    }
+
+    public <T> T timed(String operation, Supplier<T> call) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            T result = call.get();
+            outcome = "success";
+            return result;
+        } finally {
+            sample.stop(Timer.builder("keycloak.admin.requests")
+                    .description("Keycloak admin API calls")
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+
+    public void timed(String operation, Runnable call) {
+        timed(operation, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    /**
+     * Refreshes the admin token once less than the skew is left
+     * The skew has to exceed the TokenManager's own 30s lazy refresh window plus the check interval,
+     * otherwise a request can still end up refreshing inline
+     */
+    @Scheduled(fixedDelayString = "${keycloak.admin.token.check-interval-ms:5000}")
+    public void refreshTokenIfDue() {
+        long now = System.currentTimeMillis();
+        if (now < refreshAt) {
+            return;
+        }
+
+        TokenManager tokenManager = keycloakAdminClient.tokenManager();
+        AccessTokenResponse token;
+        try {
+            token = timed("token", () -> refreshAt == 0 ? tokenManager.grantToken() : refresh(tokenManager));
+        } catch (RuntimeException e) {
+            log.warn("⚠️ Keycloak admin token refresh failed, retrying in {}ms: {}", retryDelayMillis, e.getMessage());
+            refreshAt = now + retryDelayMillis;
+            return;
+        }
+
+        long lifetimeMillis = token.getExpiresIn() * 1000;
+        refreshAt = now + Math.max(1000, lifetimeMillis - refreshSkewMillis);
+        log.debug("Keycloak admin token refreshed, valid for {}s", token.getExpiresIn());
+    }
+
+    private static AccessTokenResponse refresh(TokenManager tokenManager) {
+        try {
+            return tokenManager.refreshToken();
+        } catch (RuntimeException e) {
+            // Refresh token expired or revoked (e.g. SSO session idle timeout), log in again
+            return tokenManager.grantToken();
+        }
+    }
+}
@@ -1,11 +1,20 @@
 package com.example.Keycloak.config;
 
+import jakarta.ws.rs.client.ClientBuilder;
+import org.jboss.resteasy.client.jaxrs.ResteasyClient;
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
 import org.keycloak.admin.client.Keycloak;
 import org.keycloak.admin.client.KeycloakBuilder;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keycloak admin client on a sized RESTEasy connection pool
+ * The RESTEasy default is a couple of pooled connections, which serializes concurrent registrations
+ */
 @Configuration
 public class KeycloakConfig {
 
@@ -24,14 +33,40 @@ public class KeycloakConfig {
     @Value("${keycloak.admin.client-id}")
     private String adminClientId;
 
+    @Value("${keycloak.admin.http.pool-size:50}")
+    private int poolSize;
+
+    @Value("${keycloak.admin.http.connect-timeout-ms:3000}")
+    private long connectTimeoutMillis;
+
+    @Value("${keycloak.admin.http.read-timeout-ms:10000}")
+    private long readTimeoutMillis;
+
+    @Value("${keycloak.admin.http.checkout-timeout-ms:5000}")
+    private long checkoutTimeoutMillis;
+
+    @Value("${keycloak.admin.http.connection-ttl-ms:300000}")
+    private long connectionTtlMillis;
+
     @Bean
     public Keycloak keycloakAdminClient() {
+        ResteasyClient resteasyClient = ((ResteasyClientBuilder) ClientBuilder.newBuilder())
+                .connectionPoolSize(poolSize)
+                // Every call goes to the same Keycloak host
+                .maxPooledPerRoute(poolSize)
+                .connectionCheckoutTimeout(checkoutTimeoutMillis, TimeUnit.MILLISECONDS)
+                .connectionTTL(connectionTtlMillis, TimeUnit.MILLISECONDS)
+                .connectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS)
+                .build();
+
         return KeycloakBuilder.builder()
                 .serverUrl(authServerUrl)
                 .realm("master")
                 .clientId(adminClientId)
                 .username(adminUsername)
                 .password(adminPassword)
+                .resteasyClient(resteasyClient)
                 .build();
     }
 }
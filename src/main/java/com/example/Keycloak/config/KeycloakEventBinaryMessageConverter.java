@@ -0,0 +1,80 @@
+package com.example.Keycloak.config;
+
+import com.example.Keycloak.events.BackendEvent;
+import com.example.Keycloak.events.EventCodec;
+import com.example.Keycloak.model.dto.KeycloakEventDTO;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes the binary event batches of the Keycloak event listener
+ * The wire format is owned by EventCodec, this class only maps its events to and from KeycloakEventDTO
+ * Picked up by Spring Boot's HttpMessageConverters because it is a bean
+ */
+@Component
+public class KeycloakEventBinaryMessageConverter extends AbstractHttpMessageConverter<KeycloakEventDTO[]> {
+
+    public static final String BINARY = EventCodec.BINARY;
+
+    public KeycloakEventBinaryMessageConverter() {
+        super(MediaType.parseMediaType(BINARY));
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return KeycloakEventDTO[].class == clazz;
+    }
+
+    @Override
+    protected KeycloakEventDTO[] readInternal(Class<? extends KeycloakEventDTO[]> clazz, HttpInputMessage inputMessage)
+            throws IOException {
+        List<BackendEvent> events;
+        try {
+            events = EventCodec.readBinaryBatch(ByteBuffer.wrap(inputMessage.getBody().readAllBytes()));
+        } catch (IllegalArgumentException e) {
+            throw new HttpMessageNotReadableException("Malformed event batch: " + e.getMessage(), e, inputMessage);
+        }
+        return events.stream().map(KeycloakEventBinaryMessageConverter::toDto).toArray(KeycloakEventDTO[]::new);
+    }
+
+    @Override
+    protected void writeInternal(KeycloakEventDTO[] events, HttpOutputMessage outputMessage) throws IOException {
+        List<BackendEvent> batch = new ArrayList<>(events.length);
+        for (KeycloakEventDTO event : events) {
+            batch.add(toEvent(event));
+        }
+        EventCodec.EncodeBuffer out = EventCodec.buffer();
+        EventCodec.writeBinaryBatch(batch, out);
+        outputMessage.getBody().write(out.array(), 0, out.size());
+    }
+
+    private static KeycloakEventDTO toDto(BackendEvent event) {
+        return KeycloakEventDTO.builder()
+                .eventId(event.getEventId())
+                .eventType(event.getEventType())
+                .userId(event.getUserId())
+                .username(event.getUsername())
+                .email(event.getEmail())
+                .clientId(event.getClientId())
+                .ipAddress(event.getIpAddress())
+                .realmId(event.getRealmId())
+                .source(event.getSource())
+                .timestamp(event.getTimestamp())
+                .build();
+    }
+
+    private static BackendEvent toEvent(KeycloakEventDTO event) {
+        return new BackendEvent(event.getEventId(), event.getEventType(), event.getUserId(), event.getUsername(),
+                event.getEmail(), event.getClientId(), event.getIpAddress(), event.getRealmId(), event.getSource(),
+                event.getTimestamp() != null ? event.getTimestamp() : 0L);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.Keycloak.config;
+
+import com.example.Keycloak.model.entity.EmailBulkJob;
+import com.example.Keycloak.model.entity.UserAccountStatus;
+import com.example.Keycloak.repository.EmailBulkJobRepository;
+import com.example.Keycloak.service.UserAccountStatusService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.core.oidc.user.OidcUser;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Authorizes requests on an {organizationId} path: admins may act on any organization,
+ * other callers need the given role and must belong to the organization themselves
+ * Requests on a bulk email {jobId} path follow the same rule for the job's organization,
+ * and the caller who started a job may always follow it
+ */
+@Component
+@RequiredArgsConstructor
+public class OrganizationAccess {
+
+    private final UserAccountStatusService userAccountStatusService;
+    private final EmailBulkJobRepository emailBulkJobRepository;
+
+    @Value("${app.security.admin-role:admin}")
+    private String adminRole;
+
+    public AuthorizationManager<RequestAuthorizationContext> memberWithRole(String role) {
+        return (authentication, context) -> new AuthorizationDecision(
+                isAllowed(authentication.get(), context.getVariables().get("organizationId"), role));
+    }
+
+    public AuthorizationManager<RequestAuthorizationContext> bulkJobWithRole(String role) {
+        return (authentication, context) -> new AuthorizationDecision(
+                isJobAllowed(authentication.get(), context.getVariables().get("jobId"), role));
+    }
+
+    boolean isAllowed(Authentication authentication, String organizationId, String role) {
+        if (!(principal(authentication) instanceof OidcUser oidcUser)) {
+            return false;
+        }
+        if (hasRole(authentication, adminRole)) {
+            return true;
+        }
+        return hasRole(authentication, role) && isMember(oidcUser, organizationId);
+    }
+
+    boolean isJobAllowed(Authentication authentication, String jobId, String role) {
+        if (!(principal(authentication) instanceof OidcUser oidcUser)) {
+            return false;
+        }
+        if (hasRole(authentication, adminRole)) {
+            return true;
+        }
+        if (jobId == null || !hasRole(authentication, role)) {
+            return false;
+        }
+        // Unknown jobs are denied as well, their ids are not revealed
+        EmailBulkJob job = emailBulkJobRepository.findById(jobId).orElse(null);
+        if (job == null) {
+            return false;
+        }
+        return oidcUser.getSubject().equals(job.getCreatedBy()) || isMember(oidcUser, job.getOrganizationId());
+    }
+
+    private boolean isMember(OidcUser oidcUser, String organizationId) {
+        if (organizationId == null) {
+            return false;
+        }
+        UserAccountStatus status = userAccountStatusService.findByKeycloakUserId(oidcUser.getSubject());
+        return status != null && organizationId.equals(status.getOrganizationId());
+    }
+
+    private static Object principal(Authentication authentication) {
+        return authentication != null && authentication.isAuthenticated() ? authentication.getPrincipal() : null;
+    }
+
+    private static boolean hasRole(Authentication authentication, String role) {
+        String authority = "ROLE_" + role;
+        return authentication.getAuthorities().stream().anyMatch(granted -> authority.equals(granted.getAuthority()));
+    }
+}
@@ -2,11 +2,13 @@ package com.example.Keycloak.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.oauth2.client.oidc.userinfo.OidcUserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 
 @Configuration
@@ -19,12 +21,26 @@ public class SecurityConfig {
     @Autowired(required = false)
     private CustomOidcUserService customOidcUserService;
 
+    @Autowired
+    private OrganizationAccess organizationAccess;
+
+    // Keycloak realm roles, mapped to ROLE_ authorities by CustomOidcUserService
+    @Value("${app.security.admin-role:admin}")
+    private String adminRole;
+
+    @Value("${app.security.bulk-email-role:bulk-email}")
+    private String bulkEmailRole;
+
     @Bean
     @Profile({"keycloak", "prod"})
     public SecurityFilterChain keycloakFilterChain(HttpSecurity http) throws Exception {
         http
             .authorizeHttpRequests(authz -> authz
                 .requestMatchers("/", "/login", "/auth/register", "/auth/verify-email", "/logout", "/css/**", "/js/**", "/images/**", "/api/keycloak/**").permitAll()
+                .requestMatchers("/api/email/bulk/organization/{organizationId}").access(organizationAccess.memberWithRole(bulkEmailRole))
+                .requestMatchers(HttpMethod.GET, "/api/email/bulk/{jobId}", "/api/email/bulk/{jobId}/recipients").access(organizationAccess.bulkJobWithRole(bulkEmailRole))
+                .requestMatchers("/api/email/bulk", "/api/email/bulk/**").hasRole(adminRole)
+                .requestMatchers("/api/users/provisioning").hasRole(adminRole)
                 .anyRequest().authenticated()
             )
             .csrf(csrf -> csrf
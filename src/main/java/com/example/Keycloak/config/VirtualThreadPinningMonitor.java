@@ -0,0 +1,85 @@
+package com.example.Keycloak.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reports virtual threads that stay pinned to their carrier, typically while blocking inside a
+ * synchronized block of the Mailjet (OkHttp) or Keycloak admin (RESTEasy) clients
+ * Uses the JDK's own jdk.VirtualThreadPinned JFR event, so it costs nothing while no thread pins
+ * Only active in virtual-thread mode (spring.threads.virtual.enabled), which Spring Boot applies to Tomcat,
+ * the application task executor and, through Threading.VIRTUAL, the Keycloak event processors
+ * The build targets Java 17 but the mode needs a Java 21+ runtime; enabling it on an older JVM fails startup
+ * instead of Spring Boot silently staying on platform threads
+ */
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+@Slf4j
+public class VirtualThreadPinningMonitor {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int LOGGED_FRAMES = 8;
+    private static final int VIRTUAL_THREADS_FEATURE = 21;
+
+    @Value("${app.virtual-threads.pinning-threshold-ms:20}")
+    private long pinningThresholdMillis;
+
+    private final AtomicLong pinnedCount = new AtomicLong();
+    private RecordingStream recording;
+
+    @PostConstruct
+    public void start() {
+        if (Runtime.version().feature() < VIRTUAL_THREADS_FEATURE) {
+            throw new IllegalStateException("spring.threads.virtual.enabled is set but the JVM is Java "
+                    + Runtime.version().feature() + ", virtual threads need Java " + VIRTUAL_THREADS_FEATURE
+                    + "; run on a newer JDK or set VIRTUAL_THREADS_ENABLED=false");
+        }
+        recording = new RecordingStream();
+        recording.enable(PINNED_EVENT)
+                .withThreshold(Duration.ofMillis(pinningThresholdMillis))
+                .withStackTrace();
+        recording.onEvent(PINNED_EVENT, this::onPinned);
+        recording.startAsync();
+        log.info("Virtual thread pinning monitor started - Threshold: {}ms", pinningThresholdMillis);
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinnedCount.incrementAndGet();
+        StringBuilder frames = new StringBuilder();
+        if (event.getStackTrace() != null) {
+            int count = 0;
+            for (RecordedFrame frame : event.getStackTrace().getFrames()) {
+                if (count++ == LOGGED_FRAMES) {
+                    break;
+                }
+                frames.append("\n    at ").append(frame.getMethod().getType().getName())
+                        .append('.').append(frame.getMethod().getName())
+                        .append(':').append(frame.getLineNumber());
+            }
+        }
+        log.warn("📌 Virtual thread pinned for {}ms on thread {}{}",
+                event.getDuration().toMillis(),
+                event.getThread() != null ? event.getThread().getJavaName() : "unknown", frames);
+    }
+
+    public long getPinnedCount() {
+        return pinnedCount.get();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (recording != null) {
+            recording.close();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.Keycloak.controller;
 
+import com.example.Keycloak.exception.UserAlreadyExistsException;
 import com.example.Keycloak.model.dto.UserRegistrationDTO;
 import com.example.Keycloak.service.KeycloakService;
 import lombok.RequiredArgsConstructor;
@@ -37,12 +38,6 @@ public class AuthController {
         }
 
         try {
-            // Check if user already exists
-            if (keycloakService.getUserByEmail(userRegistrationDTO.getEmail()) != null) {
-                model.addAttribute("error", "User with this email already exists");
-                return "auth/register";
-            }
-
             String userId = keycloakService.createUser(userRegistrationDTO);
             redirectAttributes.addFlashAttribute("success",
                 "Registration successful! Please check your email for verification link.");
@@ -50,6 +45,9 @@ public class AuthController {
             log.info("User registered successfully with ID: {}", userId);
             return "redirect:/login";
 
+        } catch (UserAlreadyExistsException e) {
+            model.addAttribute("error", "User with this username or email already exists");
+            return "auth/register";
         } catch (Exception e) {
             log.error("Registration failed: ", e);
             model.addAttribute("error", "Registration failed. Please try again.");
@@ -1,56 +1,133 @@
 package com.example.Keycloak.controller;
 
+import com.example.Keycloak.config.KeycloakEventBinaryMessageConverter;
+import com.example.Keycloak.model.dto.KeycloakEventAckDTO;
+import com.example.Keycloak.model.dto.KeycloakEventBatchResultDTO;
+import com.example.Keycloak.model.dto.KeycloakEventDTO;
+import com.example.Keycloak.service.KeycloakEventIngestionService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
 /**
  * REST Controller to receive Keycloak event notifications
  * This will trigger SLF4J logging in your Spring Boot backend when users login/register
  */
 @RestController
 @RequestMapping("/api/keycloak")
+@RequiredArgsConstructor
 @Slf4j
 public class KeycloakEventController {
 
+    private static final String NDJSON = "application/x-ndjson";
+    // Advertised on the health endpoint so the event listener can pick the cheapest format
+    private static final String EVENT_FORMATS = String.join(", ",
+            MediaType.APPLICATION_JSON_VALUE, NDJSON, KeycloakEventBinaryMessageConverter.BINARY);
+
+    private final KeycloakEventIngestionService keycloakEventIngestionService;
+    private final ObjectMapper objectMapper;
+
+    @GetMapping("/health")
+    public ResponseEntity<String> health() {
+        // Probed by the Keycloak event listener to decide when a backend endpoint is reachable again
+        return ResponseEntity.ok()
+                .header("X-Event-Formats", EVENT_FORMATS)
+                .body("OK");
+    }
+
     @PostMapping("/login")
-    public ResponseEntity<String> handleLoginEvent(@RequestBody String eventData) {
+    public ResponseEntity<KeycloakEventAckDTO> handleLoginEvent(@RequestBody KeycloakEventDTO event) {
+        // Acknowledged as soon as it is queued, the login is logged and processed by the ingestion pipeline
+        return accepted(keycloakEventIngestionService.submit(withLegacyDefaults(event, "LOGIN")));
+    }
+
+    @PostMapping("/registration")
+    public ResponseEntity<KeycloakEventAckDTO> handleRegistrationEvent(@RequestBody KeycloakEventDTO event) {
+        return accepted(keycloakEventIngestionService.submit(withLegacyDefaults(event, "REGISTRATION")));
+    }
 
-        try {
-            Thread.sleep(10000); // Wait for 10 seconds
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            log.warn("Timer interrupted during registration event processing", e);
+    // Listeners predating event ids still post to the per-type endpoints without one; the id only labels the ack
+    // and the logs there. The batch endpoints keep requiring the sender's id, their acks are matched on it
+    private static KeycloakEventDTO withLegacyDefaults(KeycloakEventDTO event, String eventType) {
+        if (event.getEventType() == null) {
+            event.setEventType(eventType);
         }
-        // Log the login event using SLF4J - this will appear in your Spring Boot logs
-        log.info("🔐 KEYCLOAK LOGIN EVENT RECEIVED: {}", eventData);
-        log.info("✅ User has successfully logged in via Keycloak");
+        if (event.getEventId() == null || event.getEventId().isBlank()) {
+            event.setEventId(UUID.randomUUID().toString());
+        }
+        return event;
+    }
 
-        // Here you can add your future business logic:
-        // - Update last login time in database
-        // - Send login notifications
-        // - Track user activity
-        // - Update user statistics
-        // - Trigger other services
+    @PostMapping(value = "/events:batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<KeycloakEventBatchResultDTO> handleEventBatch(@RequestBody List<KeycloakEventDTO> events) {
+        KeycloakEventBatchResultDTO result = new KeycloakEventBatchResultDTO();
+        for (KeycloakEventDTO event : events) {
+            result.add(keycloakEventIngestionService.submit(event));
+        }
 
-        return ResponseEntity.ok("Login event processed successfully");
+        log.info("📦 KEYCLOAK EVENT BATCH QUEUED - Accepted: {}, Failed: {}, Rejected: {}",
+                result.getAccepted(), result.getFailed(), result.getRejected());
+        return ResponseEntity.accepted().body(result);
     }
 
-    @PostMapping("/registration")
-    public ResponseEntity<String> handleRegistrationEvent(@RequestBody String eventData) {
+    @PostMapping(value = "/events:batch", consumes = KeycloakEventBinaryMessageConverter.BINARY)
+    public ResponseEntity<KeycloakEventBatchResultDTO> handleBinaryEventBatch(@RequestBody KeycloakEventDTO[] events) {
+        KeycloakEventBatchResultDTO result = new KeycloakEventBatchResultDTO();
+        for (KeycloakEventDTO event : events) {
+            result.add(keycloakEventIngestionService.submit(event));
+        }
 
-        // Log the registration event using SLF4J - this will appear in your Spring Boot logs
-        log.info("📝 KEYCLOAK REGISTRATION EVENT RECEIVED: {}", eventData);
-        log.info("🎉 New user has registered via Keycloak");
+        log.info("📦 KEYCLOAK BINARY EVENT BATCH QUEUED - Accepted: {}, Failed: {}, Rejected: {}",
+                result.getAccepted(), result.getFailed(), result.getRejected());
+        return ResponseEntity.accepted().body(result);
+    }
 
+    @PostMapping(value = "/events:batch", consumes = NDJSON)
+    public ResponseEntity<KeycloakEventBatchResultDTO> handleEventStream(InputStream body) throws IOException {
+        // One event per line, processed as it is read so large streams are never buffered whole
+        KeycloakEventBatchResultDTO result = new KeycloakEventBatchResultDTO();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                KeycloakEventDTO event;
+                try {
+                    event = objectMapper.readValue(line, KeycloakEventDTO.class);
+                } catch (JsonProcessingException e) {
+                    result.add(KeycloakEventAckDTO.rejected(null, "Malformed event: " + e.getOriginalMessage()));
+                    continue;
+                }
+                result.add(keycloakEventIngestionService.submit(event));
+            }
+        }
 
-        // Here you can add your future business logic:
-        // - Create user profile in your database
-        // - Send welcome emails
-        // - Set up default user settings
-        // - Trigger onboarding workflows
-        // - Add to mailing lists
+        log.info("📦 KEYCLOAK EVENT STREAM QUEUED - Accepted: {}, Failed: {}, Rejected: {}",
+                result.getAccepted(), result.getFailed(), result.getRejected());
+        return ResponseEntity.accepted().body(result);
+    }
 
-        return ResponseEntity.ok("Registration event processed successfully");
+    // 202 once queued, 503 when the queue is full so the listener retries, 400 for malformed events
+    private static ResponseEntity<KeycloakEventAckDTO> accepted(KeycloakEventAckDTO ack) {
+        HttpStatus status = switch (ack.getStatus()) {
+            case KeycloakEventAckDTO.ACCEPTED -> HttpStatus.ACCEPTED;
+            case KeycloakEventAckDTO.FAILED -> HttpStatus.SERVICE_UNAVAILABLE;
+            default -> HttpStatus.BAD_REQUEST;
+        };
+        return ResponseEntity.status(status).body(ack);
     }
 }
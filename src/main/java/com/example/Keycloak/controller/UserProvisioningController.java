@@ -0,0 +1,88 @@
+package com.example.Keycloak.controller;
+
+import com.example.Keycloak.exception.UploadTooLargeException;
+import com.example.Keycloak.model.dto.UserProvisioningSummaryDTO;
+import com.example.Keycloak.service.UserProvisioningService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Bulk user provisioning for customer onboarding
+ * The response is NDJSON: one result per row as soon as it is known, then a {"summary": ...} line
+ * Runs as an async request with its own timeout; the upload is discarded when the request ends however it ends
+ */
+@RestController
+@RequestMapping("/api/users")
+@RequiredArgsConstructor
+@Slf4j
+public class UserProvisioningController {
+
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String CSV = "text/csv";
+    private static final int FLUSH_EVERY = 50;
+
+    private final UserProvisioningService userProvisioningService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.provisioning.timeout:30m}")
+    private Duration timeout;
+
+    @PostMapping(value = "/provisioning", consumes = {NDJSON, CSV}, produces = NDJSON)
+    public WebAsyncTask<Void> provisionUsers(@RequestHeader("Content-Type") String contentType,
+                                             @RequestParam(defaultValue = "false") boolean partialImport,
+                                             InputStream rows,
+                                             HttpServletResponse response) throws IOException {
+        UserProvisioningService.Provisioning provisioning;
+        try {
+            provisioning = userProvisioningService.prepare(rows, contentType.startsWith(CSV), partialImport);
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        } catch (UploadTooLargeException e) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, e.getMessage());
+        }
+        log.info("👥 Started user provisioning ({})", partialImport ? "partial import" : "create");
+
+        // Results are written straight to the response, the task itself returns nothing
+        WebAsyncTask<Void> task = new WebAsyncTask<>(timeout.toMillis(), () -> {
+            response.setContentType(NDJSON);
+            OutputStream out = response.getOutputStream();
+            int[] written = {0};
+            UserProvisioningSummaryDTO summary = provisioning.run(result -> {
+                try {
+                    writeLine(out, result);
+                    if (++written[0] % FLUSH_EVERY == 0) {
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writeLine(out, Map.of("summary", summary));
+            out.flush();
+            return null;
+        });
+        // Also runs after a timeout, an error or a task that never started
+        task.onCompletion(provisioning::discard);
+        return task;
+    }
+
+    private void writeLine(OutputStream out, Object value) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(value));
+        out.write('\n');
+    }
+}
@@ -1,8 +1,10 @@
 package com.example.Keycloak.controller;
 
+import com.example.Keycloak.exception.OrganizationAlreadyExistsException;
+import com.example.Keycloak.model.dto.DashboardViewDTO;
 import com.example.Keycloak.model.dto.OrganizationSetupDTO;
-import com.example.Keycloak.model.entity.Organization;
-import com.example.Keycloak.service.OrganizationService;
+import com.example.Keycloak.service.DashboardQueryService;
+import com.example.Keycloak.service.OrganizationSetupService;
 import com.example.Keycloak.service.UserAccountStatusService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -25,8 +27,9 @@ import jakarta.validation.Valid;
 @Slf4j
 public class WebController {
 
-    private final OrganizationService organizationService;
     private final UserAccountStatusService userAccountStatusService;
+    private final DashboardQueryService dashboardQueryService;
+    private final OrganizationSetupService organizationSetupService;
 
     @GetMapping("/")
     public String home() {
@@ -74,22 +77,16 @@ public class WebController {
         try {
             String keycloakUserId = oidcUser.getSubject();
 
-            // Check if organization name already exists
-            if (organizationService.existsByName(organizationSetupDTO.getName())) {
-                model.addAttribute("error", "Organization with this name already exists");
-                model.addAttribute("userName", oidcUser.getGivenName() + " " + oidcUser.getFamilyName());
-                return "organization/setup";
-            }
-
-            // Create organization
-            Organization organization = organizationService.createOrganization(organizationSetupDTO);
-
-            // Update user account status
-            userAccountStatusService.updateOrganizationSetup(keycloakUserId, organization.getId());
+            // Create the organization and complete the account setup
+            organizationSetupService.completeSetup(keycloakUserId, organizationSetupDTO);
 
             redirectAttributes.addFlashAttribute("success", "Organization setup completed successfully!");
             return "redirect:/dashboard";
 
+        } catch (OrganizationAlreadyExistsException e) {
+            model.addAttribute("error", "Organization with this name already exists");
+            model.addAttribute("userName", oidcUser.getGivenName() + " " + oidcUser.getFamilyName());
+            return "organization/setup";
         } catch (Exception e) {
             log.error("Organization setup failed: ", e);
             model.addAttribute("error", "Organization setup failed. Please try again.");
@@ -103,21 +100,17 @@ public class WebController {
         if (authentication != null && authentication.getPrincipal() instanceof OidcUser oidcUser) {
             String keycloakUserId = oidcUser.getSubject();
 
-            // Check if organization setup is completed
-            if (!userAccountStatusService.isOrganizationSetupCompleted(keycloakUserId)) {
+            // Account status and organization in one round trip
+            DashboardViewDTO dashboardView = dashboardQueryService.getDashboardView(keycloakUserId);
+            if (dashboardView == null || !Boolean.TRUE.equals(dashboardView.getOrgSetupCompleted())) {
                 return "redirect:/organization-setup";
             }
-
-            var userAccountStatus = userAccountStatusService.findByKeycloakUserId(keycloakUserId);
-            if (userAccountStatus != null && userAccountStatus.getOrganizationId() != null) {
-                Organization organization = organizationService.findById(userAccountStatus.getOrganizationId());
-                model.addAttribute("organization", organization);
-            }
+            model.addAttribute("organization", dashboardView.getOrganization());
 
             // Add user and account status information to the model
             model.addAttribute("userName", oidcUser.getGivenName() + " " + oidcUser.getFamilyName());
             model.addAttribute("userEmail", oidcUser.getEmail());
-            model.addAttribute("userAccountStatus", userAccountStatus);
+            model.addAttribute("userAccountStatus", dashboardView);
 
             return "dashboard/index";
         }
@@ -0,0 +1,150 @@
+package com.example.Keycloak.events;
+
+import java.time.Duration;
+
+/**
+ * Health and latency bookkeeping for one Spring Boot backend base URL
+ * Latency and error rate are exponentially weighted moving averages, so recent behaviour dominates
+ * Each endpoint also has its own circuit breaker and a request timeout that follows its observed p99 latency
+ */
+public class BackendEndpoint {
+
+    private static final double EWMA_ALPHA = 0.2;
+
+    private final String baseUrl;
+    private final int failureThreshold;
+    private final long minBackoffMillis;
+    private final long maxBackoffMillis;
+    private final CircuitBreaker circuitBreaker;
+    private final LatencyTracker latencyTracker;
+
+    private boolean healthy = true;
+    private double ewmaLatencyMillis;
+    private double ewmaErrorRate;
+    private int consecutiveFailures;
+    private long backoffMillis;
+    private long nextProbeAt;
+    // Learned from the X-Event-Formats header of the health endpoint
+    private volatile boolean binarySupported;
+
+    public BackendEndpoint(String baseUrl, int failureThreshold, long minBackoffMillis, long maxBackoffMillis,
+                           CircuitBreaker circuitBreaker, LatencyTracker latencyTracker) {
+        this.baseUrl = baseUrl;
+        this.failureThreshold = failureThreshold;
+        this.minBackoffMillis = minBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.backoffMillis = minBackoffMillis;
+        this.circuitBreaker = circuitBreaker;
+        this.latencyTracker = latencyTracker;
+    }
+
+    public synchronized void recordSuccess(long latencyMillis) {
+        circuitBreaker.onSuccess();
+        latencyTracker.record(latencyMillis);
+        ewmaLatencyMillis = ewmaLatencyMillis == 0 ? latencyMillis : ewma(ewmaLatencyMillis, latencyMillis);
+        ewmaErrorRate = ewma(ewmaErrorRate, 0);
+        consecutiveFailures = 0;
+    }
+
+    /**
+     * A request that ran into the adaptive timeout; counts as a failure and as a latency sample at the timeout
+     */
+    public synchronized void recordTimeout() {
+        latencyTracker.recordTimeout();
+        recordFailure(false);
+    }
+
+    /**
+     * @param unreachable true when no connection could be made at all, which takes the endpoint out immediately
+     */
+    public synchronized void recordFailure(boolean unreachable) {
+        circuitBreaker.onFailure();
+        ewmaErrorRate = ewma(ewmaErrorRate, 1);
+        consecutiveFailures++;
+        if (healthy && (unreachable || consecutiveFailures >= failureThreshold)) {
+            healthy = false;
+            backoffMillis = minBackoffMillis;
+            nextProbeAt = System.currentTimeMillis() + backoffMillis;
+        }
+    }
+
+    public synchronized void probeSucceeded(long latencyMillis) {
+        healthy = true;
+        consecutiveFailures = 0;
+        backoffMillis = minBackoffMillis;
+        ewmaLatencyMillis = latencyMillis;
+        // Start from a clean slate but remember it was flaky
+        ewmaErrorRate = ewmaErrorRate / 2;
+    }
+
+    public synchronized void probeFailed() {
+        backoffMillis = Math.min(backoffMillis * 2, maxBackoffMillis);
+        nextProbeAt = System.currentTimeMillis() + backoffMillis;
+    }
+
+    public synchronized boolean isHealthy() {
+        return healthy;
+    }
+
+    /**
+     * Whether requests may be routed here; does not reserve a half-open trial call
+     */
+    public boolean isRoutable() {
+        return isHealthy() && circuitBreaker.isCallPermitted();
+    }
+
+    /**
+     * Reserves a call through the circuit breaker right before using the endpoint
+     */
+    public boolean acquire() {
+        return circuitBreaker.tryAcquire();
+    }
+
+    /**
+     * Gives back a reserved half-open trial call that ended without recording an outcome
+     */
+    public void release() {
+        circuitBreaker.release();
+    }
+
+    public Duration currentTimeout() {
+        return latencyTracker.currentTimeout();
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    public synchronized boolean isProbeDue(long now) {
+        return !healthy && now >= nextProbeAt;
+    }
+
+    /**
+     * Lower is better; an endpoint that errors half the time looks six times slower than a clean one
+     */
+    public synchronized double score() {
+        return (ewmaLatencyMillis + 1) * (1 + 10 * ewmaErrorRate);
+    }
+
+    public boolean isBinarySupported() {
+        return binarySupported;
+    }
+
+    public void setBinarySupported(boolean binarySupported) {
+        this.binarySupported = binarySupported;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public synchronized String describe() {
+        return String.format("%s latency=%.1fms p99=%dms timeout=%dms errorRate=%.2f binary=%s %s",
+                healthy ? "UP" : "DOWN", ewmaLatencyMillis, latencyTracker.getP99Millis(),
+                latencyTracker.currentTimeout().toMillis(), ewmaErrorRate, binarySupported, circuitBreaker.describe());
+    }
+
+    private static double ewma(double current, double sample) {
+        return EWMA_ALPHA * sample + (1 - EWMA_ALPHA) * current;
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.Keycloak.events;
+
+import org.jboss.logging.Logger;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry of the configured backend base URLs
+ * Routes each request to a healthy endpoint with a closed circuit, chosen by EWMA latency and error rate,
+ * and probes unhealthy endpoints in the background with exponential backoff
+ * so a dead gateway is never tried on the delivery path
+ */
+public class BackendEndpointRegistry {
+
+    private static final Logger logger = Logger.getLogger(BackendEndpointRegistry.class);
+
+    public static final String HEALTH_PATH = "/api/keycloak/health";
+    public static final String FORMATS_HEADER = "X-Event-Formats";
+
+    private final List<BackendEndpoint> endpoints;
+    private final HttpClient httpClient;
+    private final Duration probeTimeout;
+    private final ScheduledExecutorService prober;
+
+    public BackendEndpointRegistry(List<BackendEndpoint> endpoints, HttpClient httpClient, Duration probeTimeout) {
+        this.endpoints = List.copyOf(endpoints);
+        this.httpClient = httpClient;
+        this.probeTimeout = probeTimeout;
+        this.prober = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "custom-event-endpoint-prober");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start(long probeIntervalMillis) {
+        // Learn which payload formats each backend accepts before the first batch goes out
+        prober.execute(this::discoverFormats);
+        prober.scheduleWithFixedDelay(this::probeDueEndpoints, probeIntervalMillis, probeIntervalMillis, TimeUnit.MILLISECONDS);
+        logger.infof("Backend endpoint registry started with %d endpoints", endpoints.size());
+    }
+
+    public void shutdown() {
+        prober.shutdownNow();
+    }
+
+    /**
+     * Picks the better of two random healthy endpoints (power of two choices), which spreads load across
+     * several healthy backends while still favouring the fastest and most reliable one
+     *
+     * @param tried endpoints already attempted for the current request
+     * @return null when no untried routable endpoint is left; the returned endpoint already holds a circuit permit
+     */
+    public BackendEndpoint select(Collection<BackendEndpoint> tried) {
+        List<BackendEndpoint> skipped = new ArrayList<>(tried);
+        while (true) {
+            List<BackendEndpoint> candidates = new ArrayList<>(endpoints.size());
+            for (BackendEndpoint endpoint : endpoints) {
+                if (endpoint.isRoutable() && !skipped.contains(endpoint)) {
+                    candidates.add(endpoint);
+                }
+            }
+            if (candidates.isEmpty()) {
+                return null;
+            }
+
+            BackendEndpoint chosen = candidates.get(0);
+            if (candidates.size() > 1) {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int first = random.nextInt(candidates.size());
+                int second = random.nextInt(candidates.size() - 1);
+                if (second >= first) {
+                    second++;
+                }
+                BackendEndpoint a = candidates.get(first);
+                BackendEndpoint b = candidates.get(second);
+                chosen = a.score() <= b.score() ? a : b;
+            }
+
+            // Another worker may have taken the only half-open trial call in the meantime
+            if (chosen.acquire()) {
+                return chosen;
+            }
+            skipped.add(chosen);
+        }
+    }
+
+    /**
+     * False while every endpoint is down or has an open circuit
+     */
+    public boolean hasAvailableEndpoint() {
+        for (BackendEndpoint endpoint : endpoints) {
+            if (endpoint.isRoutable()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int countOpenCircuits() {
+        int open = 0;
+        for (BackendEndpoint endpoint : endpoints) {
+            if (endpoint.getCircuitState() != CircuitBreaker.State.CLOSED) {
+                open++;
+            }
+        }
+        return open;
+    }
+
+    private void probeDueEndpoints() {
+        long now = System.currentTimeMillis();
+        for (BackendEndpoint endpoint : endpoints) {
+            if (endpoint.isProbeDue(now)) {
+                probe(endpoint);
+            }
+        }
+    }
+
+    private void discoverFormats() {
+        for (BackendEndpoint endpoint : endpoints) {
+            try {
+                HttpResponse<Void> response = httpClient.send(healthRequest(endpoint), HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() == 200) {
+                    updateFormats(endpoint, response);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // Unreachable endpoints are picked up again by the regular probe
+                logger.debugf("Format discovery for %s failed: %s", endpoint.getBaseUrl(), e.getMessage());
+            }
+        }
+    }
+
+    private void updateFormats(BackendEndpoint endpoint, HttpResponse<?> response) {
+        boolean binary = response.headers().firstValue(FORMATS_HEADER)
+                .map(formats -> formats.contains(EventCodec.BINARY))
+                .orElse(false);
+        if (binary != endpoint.isBinarySupported()) {
+            endpoint.setBinarySupported(binary);
+            logger.infof("Backend endpoint %s %s binary event batches", endpoint.getBaseUrl(), binary ? "accepts" : "does not accept");
+        }
+    }
+
+    private HttpRequest healthRequest(BackendEndpoint endpoint) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(endpoint.getBaseUrl() + HEALTH_PATH))
+                .timeout(probeTimeout)
+                .GET()
+                .build();
+    }
+
+    private void probe(BackendEndpoint endpoint) {
+        long start = System.nanoTime();
+        try {
+            HttpResponse<Void> response = httpClient.send(healthRequest(endpoint), HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() == 200) {
+                // The backend may have been redeployed with a different version
+                updateFormats(endpoint, response);
+                endpoint.probeSucceeded(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                logger.infof("✅ Backend endpoint %s is reachable again", endpoint.getBaseUrl());
+                return;
+            }
+            logger.debugf("Probe of %s returned status %d", endpoint.getBaseUrl(), response.statusCode());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            logger.debugf("Probe of %s failed: %s", endpoint.getBaseUrl(), e.getMessage());
+        }
+        endpoint.probeFailed();
+    }
+
+    public Map<String, String> describe() {
+        Map<String, String> info = new LinkedHashMap<>();
+        for (BackendEndpoint endpoint : endpoints) {
+            info.put("endpoint " + endpoint.getBaseUrl(), endpoint.describe());
+        }
+        return info;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.Keycloak.events;
+
+/**
+ * A single Keycloak event notification waiting to be delivered to the Spring Boot backend
+ * Instances are immutable so they can be handed between the Keycloak request thread and the dispatch workers
+ * The wire format is produced by {@link EventCodec}
+ */
+public final class BackendEvent {
+
+    public static final String LOGIN = "LOGIN";
+    public static final String REGISTRATION = "REGISTRATION";
+    public static final String SOURCE_ADMIN_CREATE = "admin_create";
+
+    private final String eventId;
+    private final String eventType;
+    private final String userId;
+    private final String username;
+    private final String email;
+    private final String clientId;
+    private final String ipAddress;
+    private final String realmId;
+    private final String source;
+    private final long timestamp;
+    private final long createdAt;
+    private final int attempts;
+
+    public BackendEvent(String eventId, String eventType, String userId, String username, String email,
+                        String clientId, String ipAddress, String realmId, String source, long timestamp) {
+        this(eventId, eventType, userId, username, email, clientId, ipAddress, realmId, source, timestamp,
+                System.currentTimeMillis(), 0);
+    }
+
+    BackendEvent(String eventId, String eventType, String userId, String username, String email,
+                 String clientId, String ipAddress, String realmId, String source, long timestamp,
+                 long createdAt, int attempts) {
+        this.eventId = eventId;
+        this.eventType = eventType;
+        this.userId = userId;
+        this.username = username;
+        this.email = email;
+        this.clientId = clientId;
+        this.ipAddress = ipAddress;
+        this.realmId = realmId;
+        this.source = source;
+        this.timestamp = timestamp;
+        this.createdAt = createdAt;
+        this.attempts = attempts;
+    }
+
+    /**
+     * Copy of this event for the next delivery attempt
+     */
+    public BackendEvent nextAttempt() {
+        return new BackendEvent(eventId, eventType, userId, username, email, clientId, ipAddress, realmId, source,
+                timestamp, createdAt, attempts + 1);
+    }
+
+    // Unique id the backend uses to acknowledge this event inside a batch
+    public String getEventId() {
+        return eventId;
+    }
+
+    // Human readable name used in log messages, e.g. "login" or "registration (Admin)"
+    public String getDescription() {
+        String description = REGISTRATION.equals(eventType) ? "registration" : "login";
+        return SOURCE_ADMIN_CREATE.equals(source) ? description + " (Admin)" : description;
+    }
+
+    // Single-event endpoint, used when the backend has no batch endpoint
+    public String getEndpointPath() {
+        return REGISTRATION.equals(eventType) ? "/api/keycloak/registration" : "/api/keycloak/login";
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public String getIpAddress() {
+        return ipAddress;
+    }
+
+    public String getRealmId() {
+        return realmId;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+}
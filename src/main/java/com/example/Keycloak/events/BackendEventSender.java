@@ -0,0 +1,308 @@
+package com.example.Keycloak.events;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.jboss.logging.Logger;
+import org.keycloak.util.JsonSerialization;
+
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers events to the Spring Boot backend over HTTP, one at a time or as a batch
+ * Runs on the dispatcher worker threads, never on a Keycloak request thread
+ */
+public class BackendEventSender {
+
+    private static final Logger logger = Logger.getLogger(BackendEventSender.class);
+
+    private static final String BATCH_PATH = "/api/keycloak/events:batch";
+
+    // Long-lived client owned by the factory and shared by all dispatcher workers
+    private final HttpClient httpClient;
+    private final BackendEndpointRegistry registry;
+    private final PayloadFormat payloadFormat;
+
+    public BackendEventSender(HttpClient httpClient, BackendEndpointRegistry registry, PayloadFormat payloadFormat) {
+        this.httpClient = httpClient;
+        this.registry = registry;
+        this.payloadFormat = payloadFormat;
+    }
+
+    /**
+     * @return true if one of the healthy backend endpoints accepted the event
+     */
+    public boolean send(BackendEvent event) {
+        // Single events always go as JSON, the per-type endpoints predate the binary format
+        EventCodec.EncodeBuffer payload = EventCodec.buffer();
+        EventCodec.writeJson(event, payload);
+
+        // Try healthy endpoints, best first, until one works
+        List<BackendEndpoint> tried = new ArrayList<>();
+        BackendEndpoint endpoint;
+        while ((endpoint = registry.select(tried)) != null) {
+            tried.add(endpoint);
+            String backendUrl = endpoint.getBaseUrl() + event.getEndpointPath();
+            try {
+                HttpResponse<byte[]> response = post(endpoint, backendUrl, EventCodec.JSON, payload);
+
+                if (isSuccess(response)) {
+                    logger.infof("✅ %s event sent to backend successfully via: %s", event.getDescription(), backendUrl);
+                    return true;
+                } else {
+                    logger.warnf("❌ Failed to send %s event to backend via %s, status: %d, response: %s",
+                               event.getDescription(), backendUrl, response.statusCode(), bodyText(response));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (Exception e) {
+                logger.warnf("⚠️ Connection failed for %s: %s", backendUrl, e.getMessage());
+            }
+        }
+
+        logger.errorf("🚨 No healthy backend endpoint accepted %s event notification", event.getDescription());
+        return false;
+    }
+
+    /**
+     * Delivers a whole batch in one request to the backend's batch endpoint
+     * Each event is acknowledged individually, so only the failed ones have to be retried
+     */
+    public BatchResult sendBatch(List<BackendEvent> batch) {
+        if (!registry.hasAvailableEndpoint()) {
+            return BatchResult.unavailable(batch);
+        }
+
+        // Encoded once per format and reused across endpoints; the buffer belongs to this worker thread
+        EventCodec.EncodeBuffer payload = EventCodec.buffer();
+        Boolean encodedBinary = null;
+        List<BackendEndpoint> tried = new ArrayList<>();
+        BackendEndpoint endpoint;
+        while ((endpoint = registry.select(tried)) != null) {
+            tried.add(endpoint);
+            String backendUrl = endpoint.getBaseUrl() + BATCH_PATH;
+            boolean binary = payloadFormat.useBinary(endpoint);
+            if (encodedBinary == null || encodedBinary != binary) {
+                payload = EventCodec.buffer();
+                if (binary) {
+                    EventCodec.writeBinaryBatch(batch, payload);
+                } else {
+                    EventCodec.writeJsonArray(batch, payload);
+                }
+                encodedBinary = binary;
+            }
+            try {
+                HttpResponse<byte[]> response = post(endpoint, backendUrl, binary ? EventCodec.BINARY : EventCodec.JSON, payload);
+
+                if (isSuccess(response)) {
+                    BatchResult result = readAcknowledgements(batch, response.body());
+                    logger.infof("✅ Batch of %d events sent to backend via %s - Delivered: %d, Retry: %d, Rejected: %d",
+                               batch.size(), backendUrl, result.getDelivered(), result.getRetry().size(), result.getRejected());
+                    return result;
+                } else if (response.statusCode() == 415 && binary && payloadFormat == PayloadFormat.AUTO) {
+                    // Backend was rolled back to a version without the binary format, retry it with JSON
+                    logger.warnf("Binary event batches not accepted via %s, switching endpoint to JSON", backendUrl);
+                    endpoint.setBinarySupported(false);
+                    tried.remove(endpoint);
+                } else if (response.statusCode() == 404 || response.statusCode() == 405) {
+                    // Backend predates the batch endpoint, fall back to one request per event
+                    logger.warnf("Batch endpoint not available via %s, sending events individually", backendUrl);
+                    return sendIndividually(batch);
+                } else {
+                    logger.warnf("❌ Failed to send event batch to backend via %s, status: %d, response: %s",
+                               backendUrl, response.statusCode(), bodyText(response));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new BatchResult(0, 0, batch);
+            } catch (Exception e) {
+                logger.warnf("⚠️ Connection failed for %s: %s", backendUrl, e.getMessage());
+            }
+        }
+
+        logger.errorf("🚨 All healthy backend endpoints failed for batch of %d events", batch.size());
+        return new BatchResult(0, 0, batch);
+    }
+
+    public boolean isAvailable() {
+        return registry.hasAvailableEndpoint();
+    }
+
+    // Sends the request with the endpoint's adaptive timeout and feeds the outcome into its health score
+    // The payload is copied out of the thread-local buffer, a timed out send may still be writing the body
+    // from the client's own threads while this thread encodes the next batch into the same buffer
+    private HttpResponse<byte[]> post(BackendEndpoint endpoint, String backendUrl, String contentType,
+                                      EventCodec.EncodeBuffer payload) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(backendUrl))
+                .timeout(endpoint.currentTimeout())
+                .header("Content-Type", contentType)
+                .header("Accept", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(Arrays.copyOf(payload.array(), payload.size())))
+                .build();
+
+        long start = System.nanoTime();
+        try {
+            HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() >= 500) {
+                endpoint.recordFailure(false);
+            } else {
+                endpoint.recordSuccess(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+            return response;
+        } catch (ConnectException | HttpConnectTimeoutException e) {
+            endpoint.recordFailure(true);
+            throw e;
+        } catch (HttpTimeoutException e) {
+            endpoint.recordTimeout();
+            throw e;
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            endpoint.recordFailure(false);
+            throw e;
+        } finally {
+            // An interrupted half-open trial records no outcome and would otherwise block the endpoint for good
+            endpoint.release();
+        }
+    }
+
+    private BatchResult sendIndividually(List<BackendEvent> batch) {
+        int delivered = 0;
+        List<BackendEvent> retry = new ArrayList<>();
+        for (BackendEvent event : batch) {
+            if (send(event)) {
+                delivered++;
+            } else {
+                retry.add(event);
+            }
+        }
+        return new BatchResult(delivered, 0, retry);
+    }
+
+    // Streams through the acknowledgement body instead of building a tree for it
+    private static void readResults(JsonParser parser, Map<String, String> statusByEventId) throws Exception {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IllegalStateException("Expected a JSON object");
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            if (parser.nextToken() != JsonToken.START_ARRAY || !"results".equals(field)) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                String eventId = null;
+                String status = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.currentName();
+                    parser.nextToken();
+                    if ("eventId".equals(name)) {
+                        eventId = parser.getValueAsString();
+                    } else if ("status".equals(name)) {
+                        status = parser.getValueAsString();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                if (eventId != null) {
+                    statusByEventId.put(eventId, status);
+                }
+            }
+        }
+    }
+
+    private BatchResult readAcknowledgements(List<BackendEvent> batch, byte[] body) {
+        Map<String, String> statusByEventId = new HashMap<>(batch.size() * 2);
+        try (JsonParser parser = JsonSerialization.mapper.getFactory().createParser(body)) {
+            readResults(parser, statusByEventId);
+        } catch (Exception e) {
+            logger.warnf("Unreadable batch acknowledgement from backend, retrying whole batch: %s", e.getMessage());
+            return new BatchResult(0, 0, batch);
+        }
+
+        int delivered = 0;
+        int rejected = 0;
+        List<BackendEvent> retry = new ArrayList<>();
+        for (BackendEvent event : batch) {
+            String status = statusByEventId.get(event.getEventId());
+            if ("ACCEPTED".equals(status)) {
+                delivered++;
+            } else if ("REJECTED".equals(status)) {
+                rejected++;
+                logger.warnf("Backend rejected %s event %s", event.getDescription(), event.getEventId());
+            } else {
+                // FAILED or missing acknowledgement, both are worth another try
+                retry.add(event);
+            }
+        }
+        return new BatchResult(delivered, rejected, retry);
+    }
+
+    // The backend acknowledges queued events with 202, older versions answer 200
+    private static boolean isSuccess(HttpResponse<?> response) {
+        return response.statusCode() >= 200 && response.statusCode() < 300;
+    }
+
+    private static String bodyText(HttpResponse<byte[]> response) {
+        return new String(response.body(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Outcome of a batch delivery
+     */
+    public static final class BatchResult {
+
+        private final int delivered;
+        private final int rejected;
+        private final List<BackendEvent> retry;
+        private final boolean unavailable;
+
+        BatchResult(int delivered, int rejected, List<BackendEvent> retry) {
+            this(delivered, rejected, retry, false);
+        }
+
+        private BatchResult(int delivered, int rejected, List<BackendEvent> retry, boolean unavailable) {
+            this.delivered = delivered;
+            this.rejected = rejected;
+            this.retry = retry;
+            this.unavailable = unavailable;
+        }
+
+        // Nothing was attempted because no backend endpoint is currently healthy
+        static BatchResult unavailable(List<BackendEvent> batch) {
+            return new BatchResult(0, 0, batch, true);
+        }
+
+        public int getDelivered() {
+            return delivered;
+        }
+
+        // Events the backend refused as malformed, retrying will not help
+        public int getRejected() {
+            return rejected;
+        }
+
+        // Events that failed transiently and should be delivered again
+        public List<BackendEvent> getRetry() {
+            return retry;
+        }
+
+        public boolean isUnavailable() {
+            return unavailable;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.Keycloak.events;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Per-endpoint circuit breaker driven by the failure rate over a sliding window of recent calls
+ * CLOSED lets everything through, OPEN rejects calls until the open period ends,
+ * and HALF_OPEN lets a single trial call decide whether to close or open again
+ */
+public class CircuitBreaker {
+
+    private static final Logger logger = Logger.getLogger(CircuitBreaker.class);
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final boolean[] window;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openDurationMillis;
+
+    private State state = State.CLOSED;
+    private int windowPosition;
+    private int windowCount;
+    private int windowFailures;
+    private long openUntil;
+    private boolean trialInFlight;
+
+    private long openedCount;
+    private long halfOpenedCount;
+    private long closedCount;
+
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, double failureRateThreshold, long openDurationMillis) {
+        this.name = name;
+        this.window = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationMillis = openDurationMillis;
+    }
+
+    /**
+     * Non-reserving check used while choosing an endpoint
+     */
+    public synchronized boolean isCallPermitted() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                return System.currentTimeMillis() >= openUntil;
+            default:
+                return !trialInFlight;
+        }
+    }
+
+    /**
+     * Reserves the right to make a call; in HALF_OPEN only one trial call is let through
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN && System.currentTimeMillis() >= openUntil) {
+            transitionTo(State.HALF_OPEN);
+        }
+        switch (state) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Frees a half-open trial call that ended without an outcome, e.g. because the caller was interrupted
+     * A no-op once onSuccess or onFailure moved the breaker on
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN) {
+            trialInFlight = false;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            transitionTo(State.CLOSED);
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            transitionTo(State.OPEN);
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && windowCount >= minimumCalls
+                && (double) windowFailures / windowCount >= failureRateThreshold) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private void record(boolean failure) {
+        if (windowCount == window.length) {
+            if (window[windowPosition]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowPosition] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowPosition = (windowPosition + 1) % window.length;
+    }
+
+    private void transitionTo(State next) {
+        State previous = state;
+        state = next;
+        trialInFlight = false;
+        switch (next) {
+            case OPEN:
+                openUntil = System.currentTimeMillis() + openDurationMillis;
+                openedCount++;
+                logger.warnf("🔌 Circuit for %s changed %s -> OPEN (failure rate %d/%d), events are buffered locally",
+                            name, previous, windowFailures, windowCount);
+                break;
+            case HALF_OPEN:
+                halfOpenedCount++;
+                logger.infof("🔌 Circuit for %s changed %s -> HALF_OPEN, sending a trial request", name, previous);
+                break;
+            case CLOSED:
+                closedCount++;
+                windowPosition = 0;
+                windowCount = 0;
+                windowFailures = 0;
+                logger.infof("🔌 Circuit for %s changed %s -> CLOSED", name, previous);
+                break;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized String describe() {
+        return String.format("circuit=%s failures=%d/%d opened=%d halfOpened=%d closed=%d",
+                state, windowFailures, windowCount, openedCount, halfOpenedCount, closedCount);
+    }
+}
@@ -7,11 +7,7 @@ import org.keycloak.events.admin.AdminEvent;
 import org.keycloak.events.admin.OperationType;
 import org.jboss.logging.Logger;
 
-import java.net.URI;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.time.Duration;
-import java.util.concurrent.CompletableFuture;
+import java.util.UUID;
 
 /**
  * Custom Keycloak Event Listener Provider
@@ -21,8 +17,12 @@ public class CustomEventListenerProvider implements EventListenerProvider {
 
     private static final Logger logger = Logger.getLogger(CustomEventListenerProvider.class);
 
-    // HttpClient instance for sending HTTP requests
-    private final java.net.http.HttpClient httpClient = java.net.http.HttpClient.newHttpClient();
+    // Shared dispatcher owned by the factory, backend delivery never runs on the Keycloak request thread
+    private final EventDispatcher dispatcher;
+
+    public CustomEventListenerProvider(EventDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
 
     @Override
     public void onEvent(Event event) {
@@ -309,163 +309,34 @@ public class CustomEventListenerProvider implements EventListenerProvider {
     }
 
     private void sendLoginEventToBackend(Event event) {
-        try {
-            // Prepare login event data
-            String jsonPayload = String.format(
-                "{\"eventType\":\"LOGIN\",\"userId\":\"%s\",\"username\":\"%s\",\"clientId\":\"%s\",\"ipAddress\":\"%s\",\"timestamp\":%d}",
-                event.getUserId(),
-                event.getDetails() != null ? event.getDetails().get("username") : "unknown",
-                event.getClientId(),
-                event.getIpAddress(),
-                event.getTime()
-            );
-
-            // Try multiple backend URLs for different environments
-            String[] backendUrls = {
-                "http://host.docker.internal:8081/api/keycloak/login",
-                "http://localhost:8081/api/keycloak/login",
-                "http://172.17.0.1:8081/api/keycloak/login",  // Docker bridge network gateway
-                "http://192.168.1.1:8081/api/keycloak/login"   // Alternative gateway
-            };
-
-            // Try each URL synchronously until one works
-            for (String backendUrl : backendUrls) {
-                try {
-                    HttpRequest request = HttpRequest.newBuilder()
-                            .uri(URI.create(backendUrl))
-                            .timeout(Duration.ofSeconds(20))
-                            .header("Content-Type", "application/json")
-                            .header("Accept", "application/json")
-                            .POST(HttpRequest.BodyPublishers.ofString(jsonPayload))
-                            .build();
-
-                    // Send synchronously with timeout
-                    HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-                    if (response.statusCode() == 200) {
-                        logger.infof("✅ Login event sent to backend successfully via: %s", backendUrl);
-                        return; // Success, exit the method
-                    } else {
-                        logger.warnf("❌ Failed to send login event to backend via %s, status: %d, response: %s",
-                                   backendUrl, response.statusCode(), response.body());
-                    }
-                } catch (Exception e) {
-                    logger.warnf("⚠️ Connection failed for %s: %s", backendUrl, e.getMessage());
-                }
-            }
+        // Structured event, serialized by the dispatcher workers with EventCodec
+        BackendEvent backendEvent = new BackendEvent(UUID.randomUUID().toString(), BackendEvent.LOGIN,
+                event.getUserId(), detail(event, "username"), null,
+                event.getClientId(), event.getIpAddress(), null, null, event.getTime());
 
-            logger.errorf("🚨 All backend URLs failed for login event notification");
-
-        } catch (Exception e) {
-            logger.errorf("Exception while sending login event to backend: %s", e.getMessage());
-        }
+        // Hand off to the dispatcher, delivery happens on its worker threads
+        dispatcher.submit(backendEvent);
     }
 
     private void sendRegistrationEventToBackend(Event event) {
-        try {
-            // Prepare registration event data
-            String jsonPayload = String.format(
-                "{\"eventType\":\"REGISTRATION\",\"userId\":\"%s\",\"username\":\"%s\",\"email\":\"%s\",\"clientId\":\"%s\",\"ipAddress\":\"%s\",\"timestamp\":%d}",
-                event.getUserId(),
-                event.getDetails() != null ? event.getDetails().get("username") : "unknown",
-                event.getDetails() != null ? event.getDetails().get("email") : "unknown",
-                event.getClientId(),
-                event.getIpAddress(),
-                event.getTime()
-            );
-
-            // Try multiple backend URLs for different environments
-            String[] backendUrls = {
-                "http://host.docker.internal:8081/api/keycloak/registration",
-                "http://localhost:8081/api/keycloak/registration",
-                "http://172.17.0.1:8081/api/keycloak/registration",  // Docker bridge network gateway
-                "http://192.168.1.1:8081/api/keycloak/registration"   // Alternative gateway
-            };
-
-            // Try each URL synchronously until one works
-            for (String backendUrl : backendUrls) {
-                try {
-                    HttpRequest request = HttpRequest.newBuilder()
-                            .uri(URI.create(backendUrl))
-                            .timeout(Duration.ofSeconds(3))
-                            .header("Content-Type", "application/json")
-                            .header("Accept", "application/json")
-                            .POST(HttpRequest.BodyPublishers.ofString(jsonPayload))
-                            .build();
-
-                    // Send synchronously with timeout
-                    HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-                    if (response.statusCode() == 200) {
-                        logger.infof("✅ Registration event sent to backend successfully via: %s", backendUrl);
-                        return; // Success, exit the method
-                    } else {
-                        logger.warnf("❌ Failed to send registration event to backend via %s, status: %d, response: %s",
-                                   backendUrl, response.statusCode(), response.body());
-                    }
-                } catch (Exception e) {
-                    logger.warnf("⚠️ Connection failed for %s: %s", backendUrl, e.getMessage());
-                }
-            }
+        BackendEvent backendEvent = new BackendEvent(UUID.randomUUID().toString(), BackendEvent.REGISTRATION,
+                event.getUserId(), detail(event, "username"), detail(event, "email"),
+                event.getClientId(), event.getIpAddress(), null, null, event.getTime());
 
-            logger.errorf("🚨 All backend URLs failed for registration event notification");
-
-        } catch (Exception e) {
-            logger.errorf("Exception while sending registration event to backend: %s", e.getMessage());
-        }
+        dispatcher.submit(backendEvent);
     }
 
     private void sendRegistrationEventToBackendFromAdmin(AdminEvent adminEvent, String userId) {
-        try {
-            // Prepare registration event data from admin event
-            String jsonPayload = String.format(
-                "{\"eventType\":\"REGISTRATION\",\"userId\":\"%s\",\"username\":\"%s\",\"email\":\"%s\",\"realmId\":\"%s\",\"timestamp\":%d,\"source\":\"admin_create\"}",
-                userId,
-                "unknown", // Username not available in admin events
-                "unknown", // Email not available in admin events
-                adminEvent.getRealmId(),
-                adminEvent.getTime()
-            );
-
-            // Try multiple backend URLs for different environments
-            String[] backendUrls = {
-                "http://host.docker.internal:8081/api/keycloak/registration",
-                "http://localhost:8081/api/keycloak/registration",
-                "http://172.17.0.1:8081/api/keycloak/registration",  // Docker bridge network gateway
-                "http://192.168.1.1:8081/api/keycloak/registration"   // Alternative gateway
-            };
-
-            // Try each URL synchronously until one works
-            for (String backendUrl : backendUrls) {
-                try {
-                    HttpRequest request = HttpRequest.newBuilder()
-                            .uri(URI.create(backendUrl))
-                            .timeout(Duration.ofSeconds(3))
-                            .header("Content-Type", "application/json")
-                            .header("Accept", "application/json")
-                            .POST(HttpRequest.BodyPublishers.ofString(jsonPayload))
-                            .build();
-
-                    // Send synchronously with timeout
-                    HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-                    if (response.statusCode() == 200) {
-                        logger.infof("✅ Registration event (Admin) sent to backend successfully via: %s", backendUrl);
-                        return; // Success, exit the method
-                    } else {
-                        logger.warnf("❌ Failed to send registration event (Admin) to backend via %s, status: %d, response: %s",
-                                   backendUrl, response.statusCode(), response.body());
-                    }
-                } catch (Exception e) {
-                    logger.warnf("⚠️ Connection failed for %s: %s", backendUrl, e.getMessage());
-                }
-            }
+        // Username and email are not available in admin events
+        BackendEvent backendEvent = new BackendEvent(UUID.randomUUID().toString(), BackendEvent.REGISTRATION,
+                userId, "unknown", "unknown", null, null,
+                adminEvent.getRealmId(), BackendEvent.SOURCE_ADMIN_CREATE, adminEvent.getTime());
 
-            logger.errorf("🚨 All backend URLs failed for registration event (Admin) notification");
+        dispatcher.submit(backendEvent);
+    }
 
-        } catch (Exception e) {
-            logger.errorf("Exception while sending registration event (Admin) to backend: %s", e.getMessage());
-        }
+    private static String detail(Event event, String key) {
+        return event.getDetails() != null ? event.getDetails().get(key) : "unknown";
     }
 
     public void close() {
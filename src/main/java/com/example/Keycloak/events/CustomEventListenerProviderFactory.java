@@ -5,24 +5,141 @@ import org.keycloak.events.EventListenerProvider;
 import org.keycloak.events.EventListenerProviderFactory;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.provider.ServerInfoAwareProviderFactory;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Factory for creating CustomEventListenerProvider instances
  * This factory is registered with Keycloak to create event listener instances
+ * and owns the event dispatcher and HTTP client shared by all of them
  */
-public class CustomEventListenerProviderFactory implements EventListenerProviderFactory {
+public class CustomEventListenerProviderFactory implements EventListenerProviderFactory, ServerInfoAwareProviderFactory {
 
     private static final String PROVIDER_ID = "custom-event-listener";
 
+    // Default backend URLs for different environments
+    private static final String[] DEFAULT_BACKEND_URLS = {
+        "http://host.docker.internal:8081",
+        "http://localhost:8081",
+        "http://172.17.0.1:8081",  // Docker bridge network gateway
+        "http://192.168.1.1:8081"   // Alternative gateway
+    };
+
+    private EventDispatcher dispatcher;
+    private BackendEndpointRegistry endpointRegistry;
+    private ThreadPoolExecutor httpExecutor;
+    private HttpClient httpClient;
+    private long shutdownTimeoutMillis;
+
     @Override
     public EventListenerProvider create(KeycloakSession session) {
-        return new CustomEventListenerProvider();
+        return new CustomEventListenerProvider(dispatcher);
     }
 
     @Override
     public void init(Config.Scope config) {
-        // Initialize the provider factory
-        // You can read configuration parameters here if needed
+        // Configured via spi-events-listener-custom-event-listener-* options
+        int queueCapacity = config.getInt("queueCapacity", 10000);
+        int workerThreads = config.getInt("workerThreads", 2);
+        OverflowPolicy overflowPolicy = OverflowPolicy.fromConfig(config.get("overflowPolicy", "drop-oldest"));
+        long blockDeadlineMillis = config.getLong("blockDeadlineMillis", 50L);
+        int batchSize = config.getInt("batchSize", 500);
+        long lingerMillis = config.getLong("lingerMillis", 50L);
+        int maxAttempts = config.getInt("maxAttempts", 5);
+        // Counts the attempts made from the queue as well, so it should stay above maxAttempts
+        int maxReplayAttempts = config.getInt("maxReplayAttempts", 20);
+        PayloadFormat payloadFormat = PayloadFormat.fromConfig(config.get("payloadFormat", "auto"));
+        String spoolDirectory = config.get("spoolDirectory",
+                Paths.get(System.getProperty("java.io.tmpdir"), "custom-event-listener-spool").toString());
+        int spoolSegmentBytes = config.getInt("spoolSegmentBytes", 8 * 1024 * 1024);
+        int spoolMaxSegments = config.getInt("spoolMaxSegments", 16);
+        long connectTimeoutMillis = config.getLong("connectTimeoutMillis", 2000L);
+        // Upper bound for the adaptive per-endpoint request timeout
+        long requestTimeoutMillis = config.getLong("requestTimeoutMillis", 5000L);
+        int httpClientThreads = config.getInt("httpClientThreads", 4);
+        shutdownTimeoutMillis = config.getLong("shutdownTimeoutMillis", 5000L);
+
+        httpClient = createHttpClient(connectTimeoutMillis, httpClientThreads);
+        endpointRegistry = createEndpointRegistry(config, requestTimeoutMillis);
+        dispatcher = new EventDispatcher(queueCapacity, workerThreads, overflowPolicy, blockDeadlineMillis,
+                batchSize, lingerMillis, maxAttempts, maxReplayAttempts, openSpool(spoolDirectory, spoolSegmentBytes, spoolMaxSegments),
+                new BackendEventSender(httpClient, endpointRegistry, payloadFormat));
+        dispatcher.start();
+    }
+
+    private EventSpool openSpool(String directory, int segmentBytes, int maxSegments) {
+        EventSpool spool = new EventSpool(Paths.get(directory), segmentBytes, maxSegments);
+        try {
+            spool.open();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open event spool in " + directory, e);
+        }
+        return spool;
+    }
+
+    private BackendEndpointRegistry createEndpointRegistry(Config.Scope config, long requestTimeoutMillis) {
+        String[] backendUrls = config.getArray("backendUrls");
+        if (backendUrls == null || backendUrls.length == 0) {
+            backendUrls = DEFAULT_BACKEND_URLS;
+        }
+        int failureThreshold = config.getInt("endpointFailureThreshold", 3);
+        long minBackoffMillis = config.getLong("probeMinBackoffMillis", 1000L);
+        long maxBackoffMillis = config.getLong("probeMaxBackoffMillis", 60000L);
+        int breakerWindowSize = config.getInt("breakerWindowSize", 20);
+        int breakerMinimumCalls = config.getInt("breakerMinimumCalls", 10);
+        double breakerFailureRate = Double.parseDouble(config.get("breakerFailureRateThreshold", "0.5"));
+        long breakerOpenMillis = config.getLong("breakerOpenMillis", 30000L);
+        double timeoutMultiplier = Double.parseDouble(config.get("timeoutP99Multiplier", "3.0"));
+        long minRequestTimeoutMillis = config.getLong("minRequestTimeoutMillis", 250L);
+
+        List<BackendEndpoint> endpoints = new ArrayList<>();
+        for (String backendUrl : backendUrls) {
+            String baseUrl = backendUrl.trim();
+            if (baseUrl.endsWith("/")) {
+                baseUrl = baseUrl.substring(0, baseUrl.length() - 1);
+            }
+            endpoints.add(new BackendEndpoint(baseUrl, failureThreshold, minBackoffMillis, maxBackoffMillis,
+                    new CircuitBreaker(baseUrl, breakerWindowSize, breakerMinimumCalls, breakerFailureRate, breakerOpenMillis),
+                    new LatencyTracker(timeoutMultiplier, minRequestTimeoutMillis, requestTimeoutMillis)));
+        }
+
+        BackendEndpointRegistry registry = new BackendEndpointRegistry(endpoints, httpClient,
+                Duration.ofMillis(config.getLong("probeTimeoutMillis", 1000L)));
+        registry.start(config.getLong("probeIntervalMillis", 500L));
+        return registry;
+    }
+
+    /**
+     * One client for the lifetime of the factory, so connections stay pooled and kept alive between events
+     * HTTP/2 multiplexes concurrent batches over a single connection when the backend supports it
+     */
+    private HttpClient createHttpClient(long connectTimeoutMillis, int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        httpExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "custom-event-http-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        httpExecutor.allowCoreThreadTimeOut(true);
+
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(httpExecutor)
+                .build();
     }
 
     @Override
@@ -32,11 +149,45 @@ public class CustomEventListenerProviderFactory implements EventListenerProvider
 
     @Override
     public void close() {
-        // Cleanup resources when the factory is closed
+        // Flush pending notifications before Keycloak shuts down
+        if (dispatcher != null) {
+            dispatcher.shutdown(shutdownTimeoutMillis);
+        }
+        if (endpointRegistry != null) {
+            endpointRegistry.shutdown();
+        }
+        // HttpClient has no close() before Java 21; stopping its executor and dropping the
+        // reference lets the selector thread exit and releases the pooled connections
+        if (httpExecutor != null) {
+            httpExecutor.shutdown();
+        }
+        httpClient = null;
     }
 
     @Override
     public String getId() {
         return PROVIDER_ID;
     }
+
+    @Override
+    public Map<String, String> getOperationalInfo() {
+        // Shown on the provider info tab of the admin console
+        Map<String, String> info = new LinkedHashMap<>();
+        info.put("overflowPolicy", dispatcher.getOverflowPolicy().name());
+        info.put("queueDepth", String.valueOf(dispatcher.getQueueDepth()));
+        info.put("queueCapacity", String.valueOf(dispatcher.getQueueCapacity()));
+        info.put("enqueued", String.valueOf(dispatcher.getEnqueuedCount()));
+        info.put("delivered", String.valueOf(dispatcher.getDeliveredCount()));
+        info.put("batches", String.valueOf(dispatcher.getBatchCount()));
+        info.put("retried", String.valueOf(dispatcher.getRetriedCount()));
+        info.put("failed", String.valueOf(dispatcher.getFailedCount()));
+        info.put("rejected", String.valueOf(dispatcher.getRejectedCount()));
+        info.put("dropped", String.valueOf(dispatcher.getDroppedCount()));
+        info.put("spilled", String.valueOf(dispatcher.getSpilledCount()));
+        info.put("spoolSegments", String.valueOf(dispatcher.getSpoolSegmentCount()));
+        info.put("spoolDropped", String.valueOf(dispatcher.getSpoolDroppedCount()));
+        info.put("openCircuits", String.valueOf(endpointRegistry.countOpenCircuits()));
+        info.putAll(endpointRegistry.describe());
+        return info;
+    }
 }
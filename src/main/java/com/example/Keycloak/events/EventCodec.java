@@ -0,0 +1,384 @@
+package com.example.Keycloak.events;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodes backend events straight into reusable per-thread byte buffers
+ * Replaces String.format payload building: no format string parsing, no intermediate strings,
+ * and field values are properly escaped so quotes or control characters in a username cannot break the JSON
+ *
+ * Two wire formats are supported:
+ * - compact JSON ({@link #JSON}), understood by every backend version
+ * - a small schema'd binary framing ({@link #BINARY}), used when the backend advertises it on its health endpoint
+ *
+ * Binary batch layout: magic "KEB", version byte, varint event count, then per event the string fields
+ * eventId, eventType, userId, username, email, clientId, ipAddress, realmId, source
+ * (each as varint UTF-8 length + 1, 0 meaning null) followed by the 8 byte big-endian timestamp
+ * The backend's KeycloakEventBinaryMessageConverter reads and writes it through this class, so the layout lives only here
+ */
+public final class EventCodec {
+
+    public static final String JSON = "application/json";
+    public static final String BINARY = "application/x-keycloak-event-batch";
+
+    private static final byte[] MAGIC = {'K', 'E', 'B'};
+    private static final byte VERSION = 1;
+    // Guards the list allocation against a corrupt count
+    private static final int MAX_BATCH_EVENTS = 100_000;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static final ThreadLocal<EncodeBuffer> BUFFERS = ThreadLocal.withInitial(() -> new EncodeBuffer(16 * 1024));
+
+    private EventCodec() {
+    }
+
+    /**
+     * The calling thread's buffer, emptied; valid until the same thread asks for it again
+     */
+    public static EncodeBuffer buffer() {
+        EncodeBuffer buffer = BUFFERS.get();
+        buffer.reset();
+        return buffer;
+    }
+
+    public static void writeJsonArray(List<BackendEvent> events, EncodeBuffer out) {
+        out.writeByte('[');
+        for (int i = 0; i < events.size(); i++) {
+            if (i > 0) {
+                out.writeByte(',');
+            }
+            writeJson(events.get(i), out);
+        }
+        out.writeByte(']');
+    }
+
+    public static void writeJson(BackendEvent event, EncodeBuffer out) {
+        out.writeByte('{');
+        writeJsonField(out, "eventId", event.getEventId(), true);
+        writeJsonField(out, "eventType", event.getEventType(), false);
+        writeJsonField(out, "userId", event.getUserId(), false);
+        writeJsonField(out, "username", event.getUsername(), false);
+        writeJsonField(out, "email", event.getEmail(), false);
+        writeJsonField(out, "clientId", event.getClientId(), false);
+        writeJsonField(out, "ipAddress", event.getIpAddress(), false);
+        writeJsonField(out, "realmId", event.getRealmId(), false);
+        writeJsonField(out, "source", event.getSource(), false);
+        out.writeAscii(",\"timestamp\":");
+        out.writeDecimal(event.getTimestamp());
+        out.writeByte('}');
+    }
+
+    public static void writeBinaryBatch(List<BackendEvent> events, EncodeBuffer out) {
+        out.writeBytes(MAGIC, 0, MAGIC.length);
+        out.writeByte(VERSION);
+        out.writeVarInt(events.size());
+        for (BackendEvent event : events) {
+            writeBinary(event, out);
+        }
+    }
+
+    public static void writeBinary(BackendEvent event, EncodeBuffer out) {
+        out.writeNullableUtf8(event.getEventId());
+        out.writeNullableUtf8(event.getEventType());
+        out.writeNullableUtf8(event.getUserId());
+        out.writeNullableUtf8(event.getUsername());
+        out.writeNullableUtf8(event.getEmail());
+        out.writeNullableUtf8(event.getClientId());
+        out.writeNullableUtf8(event.getIpAddress());
+        out.writeNullableUtf8(event.getRealmId());
+        out.writeNullableUtf8(event.getSource());
+        out.writeLong(event.getTimestamp());
+    }
+
+    /**
+     * Reads a batch written by {@link #writeBinaryBatch}; wire events carry no delivery bookkeeping
+     *
+     * @throws IllegalArgumentException if the input is not a complete batch of a supported version
+     */
+    public static List<BackendEvent> readBinaryBatch(ByteBuffer in) {
+        try {
+            for (byte b : MAGIC) {
+                if (in.get() != b) {
+                    throw new IllegalArgumentException("Not a Keycloak event batch");
+                }
+            }
+            byte version = in.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported event batch version " + version);
+            }
+            int count = readVarInt(in);
+            if (count < 0 || count > MAX_BATCH_EVENTS) {
+                throw new IllegalArgumentException("Invalid event count " + count);
+            }
+            List<BackendEvent> events = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                events.add(readBinary(in, 0, 0));
+            }
+            return events;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated event batch", e);
+        }
+    }
+
+    /**
+     * Reads one event written by {@link #writeBinary}
+     */
+    public static BackendEvent readBinary(ByteBuffer in, long createdAt, int attempts) {
+        try {
+            String eventId = readNullableUtf8(in);
+            String eventType = readNullableUtf8(in);
+            String userId = readNullableUtf8(in);
+            String username = readNullableUtf8(in);
+            String email = readNullableUtf8(in);
+            String clientId = readNullableUtf8(in);
+            String ipAddress = readNullableUtf8(in);
+            String realmId = readNullableUtf8(in);
+            String source = readNullableUtf8(in);
+            long timestamp = in.getLong();
+            return new BackendEvent(eventId, eventType, userId, username, email, clientId, ipAddress, realmId, source,
+                    timestamp, createdAt, attempts);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated binary event", e);
+        }
+    }
+
+    private static void writeJsonField(EncodeBuffer out, String name, String value, boolean first) {
+        if (!first) {
+            out.writeByte(',');
+        }
+        out.writeByte('"');
+        out.writeAscii(name);
+        out.writeAscii("\":");
+        if (value == null) {
+            out.writeAscii("null");
+        } else {
+            out.writeJsonString(value);
+        }
+    }
+
+    private static String readNullableUtf8(ByteBuffer in) {
+        int length = readVarInt(in);
+        if (length == 0) {
+            return null;
+        }
+        length--;
+        if (length > in.remaining()) {
+            throw new IllegalArgumentException("String length " + length + " exceeds remaining " + in.remaining() + " bytes");
+        }
+        if (!in.hasArray()) {
+            // Memory-mapped spool segments are not array backed
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * Growable byte buffer reused across encodes on the same thread
+     */
+    public static final class EncodeBuffer {
+
+        private byte[] bytes;
+        private int size;
+
+        EncodeBuffer(int initialCapacity) {
+            this.bytes = new byte[initialCapacity];
+        }
+
+        void reset() {
+            size = 0;
+        }
+
+        public byte[] array() {
+            return bytes;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        private void ensure(int additional) {
+            if (size + additional > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + additional));
+            }
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            bytes[size++] = (byte) b;
+        }
+
+        void writeBytes(byte[] source, int offset, int length) {
+            ensure(length);
+            System.arraycopy(source, offset, bytes, size, length);
+            size += length;
+        }
+
+        void writeAscii(String value) {
+            int length = value.length();
+            ensure(length);
+            for (int i = 0; i < length; i++) {
+                bytes[size++] = (byte) value.charAt(i);
+            }
+        }
+
+        void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeInt(int value) {
+            ensure(4);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeVarInt(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void writeDecimal(long value) {
+            if (value == Long.MIN_VALUE) {
+                writeAscii(Long.toString(value));
+                return;
+            }
+            ensure(20);
+            if (value < 0) {
+                bytes[size++] = '-';
+                value = -value;
+            }
+            int start = size;
+            do {
+                bytes[size++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+            // Digits were written least significant first
+            for (int i = start, j = size - 1; i < j; i++, j--) {
+                byte tmp = bytes[i];
+                bytes[i] = bytes[j];
+                bytes[j] = tmp;
+            }
+        }
+
+        void writeNullableUtf8(String value) {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            // Reserve the worst case length prefix, then patch it once the encoded size is known
+            ensure(5 + value.length() * 3);
+            int lengthAt = size;
+            size += 5;
+            int start = size;
+            writeUtf8(value, false);
+            int length = size - start;
+            int prefix = varIntSize(length + 1);
+            System.arraycopy(bytes, start, bytes, lengthAt + prefix, length);
+            size = lengthAt;
+            writeVarInt(length + 1);
+            size += length;
+        }
+
+        void writeJsonString(String value) {
+            ensure(2 + value.length() * 6);
+            bytes[size++] = '"';
+            writeUtf8(value, true);
+            bytes[size++] = '"';
+        }
+
+        // Caller has ensured room for the worst case (3 bytes per char, 6 when JSON escaping)
+        private void writeUtf8(String value, boolean jsonEscape) {
+            int length = value.length();
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    if (jsonEscape && (c < 0x20 || c == '"' || c == '\\')) {
+                        writeEscape(c);
+                    } else {
+                        bytes[size++] = (byte) c;
+                    }
+                } else if (c < 0x800) {
+                    bytes[size++] = (byte) (0xC0 | (c >> 6));
+                    bytes[size++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    bytes[size++] = (byte) (0xF0 | (codePoint >> 18));
+                    bytes[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    bytes[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    bytes[size++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    // Lone surrogate, same replacement String.getBytes would use
+                    bytes[size++] = '?';
+                } else {
+                    bytes[size++] = (byte) (0xE0 | (c >> 12));
+                    bytes[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    bytes[size++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+        }
+
+        private void writeEscape(char c) {
+            bytes[size++] = '\\';
+            switch (c) {
+                case '"':
+                    bytes[size++] = '"';
+                    break;
+                case '\\':
+                    bytes[size++] = '\\';
+                    break;
+                case '\n':
+                    bytes[size++] = 'n';
+                    break;
+                case '\r':
+                    bytes[size++] = 'r';
+                    break;
+                case '\t':
+                    bytes[size++] = 't';
+                    break;
+                default:
+                    bytes[size++] = 'u';
+                    bytes[size++] = '0';
+                    bytes[size++] = '0';
+                    bytes[size++] = HEX[c >> 4];
+                    bytes[size++] = HEX[c & 0xF];
+            }
+        }
+
+        private static int varIntSize(int value) {
+            int bytes = 1;
+            while ((value & ~0x7F) != 0) {
+                value >>>= 7;
+                bytes++;
+            }
+            return bytes;
+        }
+    }
+}
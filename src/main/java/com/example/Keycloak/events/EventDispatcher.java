@@ -0,0 +1,347 @@
+package com.example.Keycloak.events;
+
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous outbox for backend notifications
+ * Keycloak request threads only enqueue into a bounded ring buffer; a small pool of worker threads drains it
+ * so login latency never depends on how fast the Spring Boot backend answers
+ * Workers coalesce queued events into batches bounded by size and linger time
+ */
+public class EventDispatcher {
+
+    private static final Logger logger = Logger.getLogger(EventDispatcher.class);
+
+    private static final long IDLE_POLL_MILLIS = 1000;
+
+    private final BlockingQueue<BackendEvent> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final long blockDeadlineMillis;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final int maxAttempts;
+    private final int maxReplayAttempts;
+    private final EventSpool spool;
+    private final BackendEventSender sender;
+    private final List<Thread> workers = new ArrayList<>();
+    private final Thread replayer;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+
+    private volatile boolean running = true;
+
+    public EventDispatcher(int capacity, int workerThreads, OverflowPolicy overflowPolicy, long blockDeadlineMillis,
+                           int batchSize, long lingerMillis, int maxAttempts, int maxReplayAttempts,
+                           EventSpool spool, BackendEventSender sender) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.blockDeadlineMillis = blockDeadlineMillis;
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.maxAttempts = maxAttempts;
+        this.maxReplayAttempts = maxReplayAttempts;
+        this.spool = spool;
+        this.sender = sender;
+
+        for (int i = 0; i < workerThreads; i++) {
+            Thread worker = new Thread(this::drain, "custom-event-dispatcher-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+        }
+        replayer = new Thread(this::replaySpool, "custom-event-spool-replayer");
+        replayer.setDaemon(true);
+    }
+
+    public void start() {
+        workers.forEach(Thread::start);
+        replayer.start();
+        logger.infof("Event dispatcher started - Capacity: %d, Workers: %d, Overflow policy: %s, Batch size: %d, Linger: %d ms",
+                    queue.remainingCapacity(), workers.size(), overflowPolicy, batchSize,
+                    TimeUnit.NANOSECONDS.toMillis(lingerNanos));
+    }
+
+    /**
+     * Hands the event to the worker pool; never waits on the backend
+     */
+    public void submit(BackendEvent event) {
+        if (!running) {
+            logger.warnf("Dispatcher is shut down, dropping %s event", event.getDescription());
+            dropped.incrementAndGet();
+            return;
+        }
+
+        if (queue.offer(event)) {
+            enqueued.incrementAndGet();
+            return;
+        }
+
+        switch (overflowPolicy) {
+            case DROP_OLDEST:
+                while (!queue.offer(event)) {
+                    BackendEvent evicted = queue.poll();
+                    if (evicted != null) {
+                        dropped.incrementAndGet();
+                        logger.warnf("Event queue full, dropped oldest %s event", evicted.getDescription());
+                    }
+                }
+                enqueued.incrementAndGet();
+                break;
+            case BLOCK_WITH_DEADLINE:
+                try {
+                    if (queue.offer(event, blockDeadlineMillis, TimeUnit.MILLISECONDS)) {
+                        enqueued.incrementAndGet();
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                dropped.incrementAndGet();
+                logger.warnf("Event queue full after %d ms, dropped %s event", blockDeadlineMillis, event.getDescription());
+                break;
+            case SPILL_TO_DISK:
+                spill(event);
+                break;
+        }
+    }
+
+    private void spill(BackendEvent event) {
+        try {
+            spool.append(event);
+            spilled.incrementAndGet();
+        } catch (Exception e) {
+            dropped.incrementAndGet();
+            logger.errorf("Failed to write %s event to the spool, event dropped: %s", event.getDescription(), e.getMessage());
+        }
+    }
+
+    private void drain() {
+        List<BackendEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                BackendEvent first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fillBatch(batch);
+                deliver(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.errorf("Unexpected error in event dispatcher worker: %s", e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Delivers spooled events, oldest first, while the backend accepts requests
+     * Runs beside the workers instead of through the queue, so live events keep flowing during a long replay
+     * The spool cursor only moves once a batch was delivered or its retries were written back to the spool;
+     * a crash or shutdown in between replays the batch again instead of losing it
+     * An event still failing after maxReplayAttempts attempts in total is given up instead of cycling through the spool forever
+     */
+    private void replaySpool() {
+        List<BackendEvent> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                if (!sender.isAvailable() || spool.read(batchSize, batch) == 0) {
+                    Thread.sleep(IDLE_POLL_MILLIS);
+                    continue;
+                }
+                BackendEventSender.BatchResult result = sender.sendBatch(batch);
+                if (Thread.currentThread().isInterrupted()) {
+                    spool.rewind();
+                    return;
+                }
+                if (result.isUnavailable()) {
+                    spool.rewind();
+                    Thread.sleep(IDLE_POLL_MILLIS);
+                    continue;
+                }
+
+                batches.incrementAndGet();
+                delivered.addAndGet(result.getDelivered());
+                rejected.addAndGet(result.getRejected());
+                for (BackendEvent event : result.getRetry()) {
+                    BackendEvent next = event.nextAttempt();
+                    if (next.getAttempts() < maxReplayAttempts) {
+                        retried.incrementAndGet();
+                        spill(next);
+                    } else {
+                        failed.incrementAndGet();
+                        logger.errorf("%s event %s failed %d attempts, giving up on it",
+                                    event.getDescription(), event.getEventId(), next.getAttempts());
+                    }
+                }
+                spool.commit();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                spool.rewind();
+                return;
+            } catch (Exception e) {
+                spool.rewind();
+                logger.errorf("Unexpected error while replaying spooled events: %s", e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Keeps collecting until the batch is full or the linger time since its first event has passed
+    private void fillBatch(List<BackendEvent> batch) throws InterruptedException {
+        long lingerDeadline = System.nanoTime() + lingerNanos;
+        while (batch.size() < batchSize) {
+            if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = lingerDeadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            BackendEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void deliver(List<BackendEvent> batch) {
+        BackendEventSender.BatchResult result = sender.sendBatch(batch);
+        if (result.isUnavailable()) {
+            // Every circuit is open or every endpoint is down; park the events in the local buffer
+            // instead of holding the worker, they are replayed once an endpoint accepts requests again
+            for (BackendEvent event : batch) {
+                spill(event);
+            }
+            return;
+        }
+
+        batches.incrementAndGet();
+        delivered.addAndGet(result.getDelivered());
+        rejected.addAndGet(result.getRejected());
+
+        for (BackendEvent event : result.getRetry()) {
+            BackendEvent next = event.nextAttempt();
+            if (next.getAttempts() < maxAttempts) {
+                retried.incrementAndGet();
+                requeue(next);
+            } else {
+                // Out of immediate retries; keep it in the spool until the backend recovers
+                failed.incrementAndGet();
+                logger.warnf("%s event %s failed %d attempts, moving it to the spool",
+                            event.getDescription(), event.getEventId(), next.getAttempts());
+                spill(event);
+            }
+        }
+    }
+
+    // Events already accepted from Keycloak are never dropped on requeue, they go back to the spool instead
+    private void requeue(BackendEvent event) {
+        if (!queue.offer(event)) {
+            spill(event);
+        }
+    }
+
+    /**
+     * Stops accepting events and gives the workers a grace period to flush the queue
+     */
+    public void shutdown(long timeoutMillis) {
+        running = false;
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (Thread worker : workers) {
+            try {
+                worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        workers.forEach(Thread::interrupt);
+        replayer.interrupt();
+        try {
+            // Its uncommitted batch stays in the spool, it must not append or commit after the flush
+            replayer.join(Math.max(1, deadline - System.currentTimeMillis()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Whatever is left survives the restart in the spool
+        BackendEvent event;
+        while ((event = queue.poll()) != null) {
+            spill(event);
+        }
+        spool.flush();
+        logger.infof("Event dispatcher stopped - Delivered: %d, Failed: %d, Rejected: %d, Dropped: %d, Spilled: %d",
+                    delivered.get(), failed.get(), rejected.get(), dropped.get(), spilled.get());
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getQueueCapacity() {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+    public long getEnqueuedCount() {
+        return enqueued.get();
+    }
+
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getRetriedCount() {
+        return retried.get();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getSpilledCount() {
+        return spilled.get();
+    }
+
+    public int getSpoolSegmentCount() {
+        return spool.getSegmentCount();
+    }
+
+    public long getSpoolDroppedCount() {
+        return spool.getDroppedRecords();
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+}
@@ -0,0 +1,403 @@
+package com.example.Keycloak.events;
+
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Durable local spool for events the backend could not take
+ * Events are appended to memory-mapped, fixed-size segment files, so writing one is a memory copy and
+ * never a synchronous disk write; the OS flushes the pages and they survive a Keycloak restart
+ *
+ * Record layout: [int length][int crc32][long createdAt][int attempts][event in EventCodec binary format]
+ * A zero length marks the end of a segment
+ * The read cursor (segment id + offset) lives in its own small mapped file; reads run ahead of it and it only
+ * moves on commit(), once the caller has delivered the events, so a crash in between replays them again
+ * Fully committed and discarded segments are unmapped right away instead of waiting for the GC
+ */
+public class EventSpool {
+
+    private static final Logger logger = Logger.getLogger(EventSpool.class);
+
+    private static final String SEGMENT_PREFIX = "spool-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CURSOR_FILE = "spool.cursor";
+    private static final int HEADER_BYTES = 8;
+
+    // Unsafe.invokeCleaner is the only way to unmap before Java 21's Arena API, and jdk.unsupported stays
+    // accessible; without it deleted segments keep their mapping until the buffer is garbage collected
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.debugf("Unmapping spool segments is not supported: %s", e.getMessage());
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int maxSegments;
+
+    // Oldest first; the last one is being written, the first one is being read
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private MappedByteBuffer cursor;
+    // Committed position, mirrored in the cursor file
+    private long readSegmentId;
+    private int readOffset;
+    // Position after the last event handed out by read()
+    private long aheadSegmentId;
+    private int aheadOffset;
+    private long droppedRecords;
+
+    public EventSpool(Path directory, int segmentBytes, int maxSegments) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        // The segment being written and the one being read must be able to coexist
+        this.maxSegments = Math.max(2, maxSegments);
+    }
+
+    /**
+     * Maps the existing segments and restores the read cursor and write position left by the previous run
+     */
+    public synchronized void open() throws IOException {
+        Files.createDirectories(directory);
+
+        List<Long> ids = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                ids.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        ids.sort(Long::compare);
+        for (long id : ids) {
+            Segment segment = mapSegment(id);
+            segment.writeOffset = scanWriteOffset(segment.buffer);
+            segments.addLast(segment);
+        }
+
+        try (FileChannel channel = FileChannel.open(directory.resolve(CURSOR_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            cursor = channel.map(FileChannel.MapMode.READ_WRITE, 0, 12);
+        }
+        readSegmentId = cursor.getLong(0);
+        readOffset = cursor.getInt(8);
+
+        if (segments.isEmpty()) {
+            segments.addLast(mapSegment(1));
+        }
+        if (readSegmentId < segments.peekFirst().id || readSegmentId > segments.peekLast().id) {
+            // No valid cursor (first start or its segment is gone), start from the oldest event
+            moveCursor(segments.peekFirst().id, 0);
+        }
+        // Segments before the cursor were fully replayed before the restart
+        while (segments.size() > 1 && segments.peekFirst().id < readSegmentId) {
+            deleteSegment(segments.pollFirst());
+        }
+        rewind();
+
+        if (hasPending()) {
+            logger.infof("Event spool opened in %s with pending events in %d segment(s)", directory, segments.size());
+        }
+    }
+
+    public synchronized void append(BackendEvent event) throws IOException {
+        EventCodec.EncodeBuffer data = encode(event);
+        int recordBytes = HEADER_BYTES + data.size();
+        if (recordBytes + 4 > segmentBytes) {
+            throw new IOException("Event of " + data.size() + " bytes does not fit into a spool segment");
+        }
+
+        Segment segment = segments.peekLast();
+        if (segment.writeOffset + recordBytes + 4 > segmentBytes) {
+            segment = rotate();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(data.array(), 0, data.size());
+        ByteBuffer buffer = segment.buffer;
+        int offset = segment.writeOffset;
+        buffer.put(offset + HEADER_BYTES, data.array(), 0, data.size());
+        buffer.putInt(offset + 4, (int) crc.getValue());
+        // Length goes last, a record is only visible to the reader once it is complete
+        buffer.putInt(offset, data.size());
+        segment.writeOffset = offset + recordBytes;
+    }
+
+    /**
+     * Whether events exist that were not committed yet, including ones already handed out by read()
+     */
+    public synchronized boolean hasPending() {
+        Segment last = segments.peekLast();
+        return last != null && (readSegmentId != last.id || readOffset < last.writeOffset);
+    }
+
+    /**
+     * Adds up to {@code max} spooled events to {@code out} in the order they were written
+     * The events stay in the spool until commit(); the next read continues after them
+     *
+     * @return the number of events added
+     */
+    public synchronized int read(int max, List<BackendEvent> out) {
+        int handed = 0;
+        while (handed < max && hasUnread()) {
+            Segment segment = segment(aheadSegmentId);
+            ByteBuffer buffer = segment.buffer;
+
+            int length = aheadOffset + HEADER_BYTES <= segmentBytes ? buffer.getInt(aheadOffset) : 0;
+            if (length <= 0 || aheadOffset + HEADER_BYTES + length > segmentBytes) {
+                // End of this segment; move on if a newer one exists
+                if (segment == segments.peekLast()) {
+                    break;
+                }
+                moveAhead(next(segment).id, 0);
+                continue;
+            }
+
+            ByteBuffer data = buffer.slice(aheadOffset + HEADER_BYTES, length);
+            CRC32 crc = new CRC32();
+            crc.update(data.duplicate());
+            if ((int) crc.getValue() != buffer.getInt(aheadOffset + 4)) {
+                logger.errorf("CRC mismatch in spool segment %d at offset %d, skipping rest of segment", segment.id, aheadOffset);
+                droppedRecords++;
+                if (segment == segments.peekLast()) {
+                    // Nothing valid can follow in the segment being written, start a fresh one
+                    try {
+                        rotate();
+                    } catch (IOException e) {
+                        logger.errorf("Failed to create a new spool segment: %s", e.getMessage());
+                        break;
+                    }
+                }
+                moveAhead(next(segment).id, 0);
+                continue;
+            }
+
+            int end = aheadOffset + HEADER_BYTES + length;
+            try {
+                out.add(decode(data));
+                handed++;
+            } catch (IllegalArgumentException e) {
+                logger.errorf("Unreadable event in spool segment %d at offset %d: %s", segment.id, aheadOffset, e.getMessage());
+                droppedRecords++;
+            }
+            moveAhead(segment.id, end);
+        }
+        return handed;
+    }
+
+    /**
+     * Makes everything handed out by read() so far permanently consumed and releases finished segments
+     */
+    public synchronized void commit() {
+        if (aheadSegmentId < readSegmentId || (aheadSegmentId == readSegmentId && aheadOffset < readOffset)) {
+            // The segment the events came from was discarded by rotate() in the meantime
+            rewind();
+            return;
+        }
+        moveCursor(aheadSegmentId, aheadOffset);
+        while (segments.size() > 1 && segments.peekFirst().id < readSegmentId) {
+            deleteSegment(segments.pollFirst());
+        }
+    }
+
+    /**
+     * Forgets events handed out since the last commit(), the next read() returns them again
+     */
+    public synchronized void rewind() {
+        aheadSegmentId = readSegmentId;
+        aheadOffset = readOffset;
+    }
+
+    /**
+     * Pushes dirty pages to disk; only used on shutdown, the login path never waits for this
+     */
+    public synchronized void flush() {
+        for (Segment segment : segments) {
+            segment.buffer.force();
+        }
+        if (cursor != null) {
+            cursor.force();
+        }
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    public synchronized long getDroppedRecords() {
+        return droppedRecords;
+    }
+
+    private Segment rotate() throws IOException {
+        Segment next = mapSegment(segments.peekLast().id + 1);
+        segments.addLast(next);
+
+        // Enforce the size cap by discarding the oldest segment, unreplayed events included
+        while (segments.size() > maxSegments) {
+            Segment oldest = segments.pollFirst();
+            if (oldest.id == readSegmentId) {
+                droppedRecords += countRecords(oldest.buffer, readOffset);
+                moveCursor(segments.peekFirst().id, 0);
+            }
+            if (oldest.id >= aheadSegmentId) {
+                // Events handed out from it can no longer be committed, commit() falls back to the cursor
+                rewind();
+            }
+            logger.warnf("Event spool reached %d segments, discarded segment %d", maxSegments, oldest.id);
+            deleteSegment(oldest);
+        }
+        return next;
+    }
+
+    private boolean hasUnread() {
+        Segment last = segments.peekLast();
+        return last != null && (aheadSegmentId != last.id || aheadOffset < last.writeOffset);
+    }
+
+    private Segment segment(long id) {
+        for (Segment segment : segments) {
+            if (segment.id == id) {
+                return segment;
+            }
+        }
+        throw new IllegalStateException("Spool segment " + id + " is not mapped");
+    }
+
+    private Segment next(Segment segment) {
+        for (Segment candidate : segments) {
+            if (candidate.id > segment.id) {
+                return candidate;
+            }
+        }
+        throw new IllegalStateException("No spool segment after " + segment.id);
+    }
+
+    private void moveAhead(long segmentId, int offset) {
+        aheadSegmentId = segmentId;
+        aheadOffset = offset;
+    }
+
+    private void moveCursor(long segmentId, int offset) {
+        readSegmentId = segmentId;
+        readOffset = offset;
+        cursor.putLong(0, segmentId);
+        cursor.putInt(8, offset);
+    }
+
+    private Segment mapSegment(long id) throws IOException {
+        Path file = directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new Segment(id, file, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+        }
+    }
+
+    private void deleteSegment(Segment segment) {
+        unmap(segment.buffer);
+        try {
+            Files.deleteIfExists(segment.file);
+        } catch (IOException e) {
+            logger.warnf("Failed to delete spool segment %s: %s", segment.file, e.getMessage());
+        }
+    }
+
+    // Releases the mapping now; the buffer must not be touched afterwards, segments are dropped from the deque first
+    private static void unmap(MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException e) {
+            logger.debugf("Could not unmap spool segment, the GC releases it later: %s", e.getMessage());
+        }
+    }
+
+    // Walks the records of a segment left by a previous run to find where writing continues
+    private int scanWriteOffset(ByteBuffer buffer) {
+        int offset = 0;
+        while (offset + HEADER_BYTES <= segmentBytes) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + HEADER_BYTES + length > segmentBytes) {
+                break;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(offset + HEADER_BYTES, length));
+            if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+                // Torn write from a crash; overwrite it
+                break;
+            }
+            offset += HEADER_BYTES + length;
+        }
+        return offset;
+    }
+
+    private int countRecords(ByteBuffer buffer, int from) {
+        int count = 0;
+        int offset = from;
+        while (offset + HEADER_BYTES <= segmentBytes) {
+            int length = buffer.getInt(offset);
+            if (length <= 0) {
+                break;
+            }
+            count++;
+            offset += HEADER_BYTES + length;
+        }
+        return count;
+    }
+
+    // Delivery bookkeeping followed by the event in the codec's binary format
+    private static EventCodec.EncodeBuffer encode(BackendEvent event) {
+        EventCodec.EncodeBuffer out = EventCodec.buffer();
+        out.writeLong(event.getCreatedAt());
+        out.writeInt(event.getAttempts());
+        EventCodec.writeBinary(event, out);
+        return out;
+    }
+
+    private static BackendEvent decode(ByteBuffer data) {
+        long createdAt = data.getLong();
+        int attempts = data.getInt();
+        return EventCodec.readBinary(data, createdAt, attempts);
+    }
+
+    private static final class Segment {
+
+        private final long id;
+        private final Path file;
+        private final MappedByteBuffer buffer;
+        private int writeOffset;
+
+        private Segment(long id, Path file, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+}
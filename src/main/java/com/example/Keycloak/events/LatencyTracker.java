@@ -0,0 +1,71 @@
+package com.example.Keycloak.events;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent request latencies of one endpoint and derives a request timeout from their p99
+ * Timed out calls count as samples at the timeout they hit, so a backend that got slower pushes the timeout up
+ * instead of only ever being cut off; each recompute may at most double the timeout
+ * Until enough samples exist the configured maximum timeout is used
+ */
+public class LatencyTracker {
+
+    private static final int SAMPLES = 256;
+    private static final int MIN_SAMPLES = 20;
+    private static final int RECOMPUTE_EVERY = 16;
+    private static final int MAX_GROWTH = 2;
+
+    private final long[] samples = new long[SAMPLES];
+    private final double multiplier;
+    private final long minTimeoutMillis;
+    private final long maxTimeoutMillis;
+
+    private int position;
+    private int count;
+    private int sinceRecompute;
+    private long p99Millis;
+    private Duration timeout;
+
+    public LatencyTracker(double multiplier, long minTimeoutMillis, long maxTimeoutMillis) {
+        this.multiplier = multiplier;
+        this.minTimeoutMillis = minTimeoutMillis;
+        this.maxTimeoutMillis = maxTimeoutMillis;
+        this.timeout = Duration.ofMillis(maxTimeoutMillis);
+    }
+
+    public synchronized void record(long latencyMillis) {
+        samples[position] = latencyMillis;
+        position = (position + 1) % SAMPLES;
+        if (count < SAMPLES) {
+            count++;
+        }
+        if (count >= MIN_SAMPLES && ++sinceRecompute >= RECOMPUTE_EVERY) {
+            sinceRecompute = 0;
+            recompute();
+        }
+    }
+
+    /**
+     * Records a call that was cut off by the current timeout; the real latency is unknown but at least this long
+     */
+    public synchronized void recordTimeout() {
+        record(timeout.toMillis());
+    }
+
+    private void recompute() {
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        p99Millis = sorted[Math.min(count - 1, (int) Math.ceil(count * 0.99) - 1)];
+        long millis = Math.min((long) (p99Millis * multiplier), timeout.toMillis() * MAX_GROWTH);
+        timeout = Duration.ofMillis(Math.max(minTimeoutMillis, Math.min(maxTimeoutMillis, millis)));
+    }
+
+    public synchronized Duration currentTimeout() {
+        return timeout;
+    }
+
+    public synchronized long getP99Millis() {
+        return p99Millis;
+    }
+}
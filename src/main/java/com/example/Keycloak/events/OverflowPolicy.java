@@ -0,0 +1,28 @@
+package com.example.Keycloak.events;
+
+import java.util.Locale;
+
+/**
+ * What the event dispatcher does when its queue is full
+ */
+public enum OverflowPolicy {
+
+    // Evict the oldest queued event to make room for the new one
+    DROP_OLDEST,
+
+    // Wait up to the configured deadline for room, then drop the new event
+    BLOCK_WITH_DEADLINE,
+
+    // Write the new event to the local spool and replay it once the queue drains
+    SPILL_TO_DISK;
+
+    /**
+     * Parses the SPI configuration value, e.g. "drop-oldest" or "spill-to-disk"
+     */
+    public static OverflowPolicy fromConfig(String value) {
+        if (value == null || value.isBlank()) {
+            return DROP_OLDEST;
+        }
+        return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+    }
+}
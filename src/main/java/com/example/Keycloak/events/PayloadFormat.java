@@ -0,0 +1,32 @@
+package com.example.Keycloak.events;
+
+import java.util.Locale;
+
+/**
+ * Wire format used for event batches sent to the backend
+ */
+public enum PayloadFormat {
+
+    // Binary when the endpoint advertises it on its health endpoint, JSON otherwise
+    AUTO,
+
+    // Always JSON, for backends behind proxies that inspect bodies
+    JSON,
+
+    // Always binary; only for backends known to support it
+    BINARY;
+
+    /**
+     * Parses the SPI configuration value, e.g. "auto" or "json"
+     */
+    public static PayloadFormat fromConfig(String value) {
+        if (value == null || value.isBlank()) {
+            return AUTO;
+        }
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+
+    boolean useBinary(BackendEndpoint endpoint) {
+        return this == BINARY || (this == AUTO && endpoint.isBinarySupported());
+    }
+}
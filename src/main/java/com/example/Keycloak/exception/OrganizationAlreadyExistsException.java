@@ -0,0 +1,11 @@
+package com.example.Keycloak.exception;
+
+/**
+ * Thrown when the unique, case-insensitive index on Organization.name rejects a write
+ */
+public class OrganizationAlreadyExistsException extends RuntimeException {
+
+    public OrganizationAlreadyExistsException(String name, Throwable cause) {
+        super("Organization with name '" + name + "' already exists", cause);
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.Keycloak.exception;
+
+/**
+ * Thrown while spooling an upload that grows beyond the configured limit
+ */
+public class UploadTooLargeException extends RuntimeException {
+
+    public UploadTooLargeException(long maxBytes) {
+        super("Upload exceeds the limit of " + maxBytes + " bytes");
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.Keycloak.exception;
+
+/**
+ * Thrown when Keycloak rejects a new user with 409 Conflict because the username or email is taken
+ */
+public class UserAlreadyExistsException extends RuntimeException {
+
+    public UserAlreadyExistsException(String username) {
+        super("User '" + username + "' already exists");
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.Keycloak.mailjet.config;
+
+import com.mailjet.client.ClientOptions;
+import com.mailjet.client.MailjetClient;
+import io.micrometer.core.instrument.Gauge;
+import jakarta.annotation.PreDestroy;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One shared Mailjet client for the whole application
+ * The underlying OkHttp client keeps TLS connections to api.mailjet.com alive between sends,
+ * so bursts of registration emails reuse warm connections instead of handshaking per email
+ */
+@Configuration
+public class MailjetConfig {
+
+    @Value("${mailjet.api.key}")
+    private String apiKey;
+
+    @Value("${mailjet.api.secret}")
+    private String apiSecret;
+
+    @Value("${mailjet.http.connect-timeout-ms:3000}")
+    private long connectTimeoutMillis;
+
+    @Value("${mailjet.http.read-timeout-ms:10000}")
+    private long readTimeoutMillis;
+
+    @Value("${mailjet.http.max-idle-connections:10}")
+    private int maxIdleConnections;
+
+    @Value("${mailjet.http.keep-alive-ms:300000}")
+    private long keepAliveMillis;
+
+    @Value("${mailjet.http.max-requests:64}")
+    private int maxRequests;
+
+    private OkHttpClient httpClient;
+
+    @Bean
+    public OkHttpClient mailjetHttpClient() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        // Every request goes to the same host
+        dispatcher.setMaxRequestsPerHost(maxRequests);
+
+        httpClient = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveMillis, TimeUnit.MILLISECONDS))
+                .dispatcher(dispatcher)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .readTimeout(Duration.ofMillis(readTimeoutMillis))
+                .writeTimeout(Duration.ofMillis(readTimeoutMillis))
+                .retryOnConnectionFailure(true)
+                .build();
+        return httpClient;
+    }
+
+    @Bean
+    public MailjetClient mailjetClient(OkHttpClient mailjetHttpClient) {
+        return new MailjetClient(
+            ClientOptions.builder()
+                .apiKey(apiKey)
+                .apiSecretKey(apiSecret)
+                .okHttpClient(mailjetHttpClient)
+                .build()
+        );
+    }
+
+    /**
+     * Connection pool and in-flight request gauges, exposed under /actuator/metrics/mailjet.http.*
+     */
+    @Bean
+    public MeterBinder mailjetHttpMetrics(OkHttpClient mailjetHttpClient) {
+        ConnectionPool pool = mailjetHttpClient.connectionPool();
+        Dispatcher dispatcher = mailjetHttpClient.dispatcher();
+        return registry -> {
+            Gauge.builder("mailjet.http.connections", pool, ConnectionPool::connectionCount)
+                    .description("Open connections to the Mailjet API")
+                    .register(registry);
+            Gauge.builder("mailjet.http.connections.idle", pool, ConnectionPool::idleConnectionCount)
+                    .description("Idle pooled connections to the Mailjet API")
+                    .register(registry);
+            Gauge.builder("mailjet.http.requests.in-flight", dispatcher, Dispatcher::runningCallsCount)
+                    .description("Mailjet API calls currently executing")
+                    .register(registry);
+            Gauge.builder("mailjet.http.requests.queued", dispatcher, Dispatcher::queuedCallsCount)
+                    .description("Asynchronous Mailjet API calls waiting for a free slot")
+                    .register(registry);
+        };
+    }
+
+    /**
+     * Closes pooled connections and stops the dispatcher threads on shutdown
+     */
+    @PreDestroy
+    public void shutdownHttpClient() {
+        if (httpClient != null) {
+            httpClient.dispatcher().executorService().shutdown();
+            httpClient.connectionPool().evictAll();
+        }
+    }
+}
@@ -1,26 +1,44 @@
 package com.example.Keycloak.mailjet.controller;
 
 
+import com.example.Keycloak.mailjet.model.dto.BulkEmailJobDTO;
+import com.example.Keycloak.mailjet.model.dto.BulkEmailRecipientDTO;
+import com.example.Keycloak.mailjet.model.dto.BulkEmailRequestDTO;
 import com.example.Keycloak.mailjet.model.dto.EmailRequestDTO;
 import com.example.Keycloak.mailjet.model.dto.EmailResponseDTO;
+import com.example.Keycloak.mailjet.service.BulkEmailService;
 import com.example.Keycloak.mailjet.service.MailjetService;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.oauth2.core.oidc.user.OidcUser;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/email")
-@CrossOrigin(origins = "*")
 public class EmailController {
     
     private static final Logger logger = LoggerFactory.getLogger(EmailController.class);
     
+    private static final String CSV = "text/csv";
+
     @Autowired
     private MailjetService mailjetService;
+
+    @Autowired
+    private BulkEmailService bulkEmailService;
     
     @PostMapping("/send")
     public ResponseEntity<EmailResponseDTO> sendEmail(@Valid @RequestBody EmailRequestDTO emailRequest) {
@@ -41,6 +59,8 @@ public class EmailController {
             if (response.isSuccess()) {
                 logger.info("Email sent successfully to: {}", emailRequest.getTo());
                 return ResponseEntity.ok(response);
+            } else if (response.isRateLimited()) {
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(response);
             } else {
                 logger.error("Failed to send email: {}", response.getMessage());
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
@@ -54,6 +74,65 @@ public class EmailController {
         }
     }
     
+    /**
+     * Bulk send to an uploaded recipient list; returns the job right away
+     * Multipart with a JSON "request" part (subject, body) and a "recipients" file, CSV when its content type
+     * is text/csv or its name ends in .csv, NDJSON otherwise; admins only
+     */
+    @PostMapping(value = "/bulk", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<BulkEmailJobDTO> sendBulkEmail(@Valid @RequestPart("request") BulkEmailRequestDTO request,
+                                                         @RequestPart("recipients") MultipartFile recipients,
+                                                         @AuthenticationPrincipal OidcUser user) throws IOException {
+        try (InputStream in = recipients.getInputStream()) {
+            BulkEmailJobDTO job = bulkEmailService.startUploadJob(request, in, isCsv(recipients), subject(user));
+            logger.info("Started bulk email job {} from uploaded recipient list", job.getJobId());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    /**
+     * Bulk send to every user of an organization
+     */
+    @PostMapping("/bulk/organization/{organizationId}")
+    public ResponseEntity<BulkEmailJobDTO> sendOrganizationEmail(@PathVariable String organizationId,
+                                                                 @Valid @RequestBody BulkEmailRequestDTO request,
+                                                                 @AuthenticationPrincipal OidcUser user) {
+        try {
+            BulkEmailJobDTO job = bulkEmailService.startOrganizationJob(request, organizationId, subject(user));
+            logger.info("Started bulk email job {} for organization {}", job.getJobId(), organizationId);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    // Job endpoints are limited to the job's creator, members of its organization and admins (OrganizationAccess)
+    @GetMapping("/bulk/{jobId}")
+    public ResponseEntity<BulkEmailJobDTO> getBulkEmailJob(@PathVariable String jobId) {
+        BulkEmailJobDTO job = bulkEmailService.getJob(jobId);
+        return job != null ? ResponseEntity.ok(job) : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/bulk/{jobId}/recipients")
+    public ResponseEntity<List<BulkEmailRecipientDTO>> getBulkEmailRecipients(@PathVariable String jobId,
+                                                                              @RequestParam(defaultValue = "0") int page,
+                                                                              @RequestParam(defaultValue = "100") int size) {
+        return ResponseEntity.ok(bulkEmailService.getRecipients(jobId, page, size));
+    }
+
+    private static String subject(OidcUser user) {
+        return user != null ? user.getSubject() : null;
+    }
+
+    private static boolean isCsv(MultipartFile file) {
+        String contentType = file.getContentType();
+        String name = file.getOriginalFilename();
+        return (contentType != null && contentType.startsWith(CSV))
+                || (name != null && name.toLowerCase(Locale.ROOT).endsWith(".csv"));
+    }
+
     @GetMapping("/health")
     public ResponseEntity<String> healthCheck() {
         if (mailjetService.isConfigured()) {
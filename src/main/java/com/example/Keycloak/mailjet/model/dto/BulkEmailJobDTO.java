@@ -0,0 +1,43 @@
+package com.example.Keycloak.mailjet.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BulkEmailJobDTO {
+
+    private String jobId;
+
+    // Rate limiter category the job's emails are sent under
+    private String category;
+
+    private String source;
+
+    private String status;
+
+    private long recipients;
+
+    private long skipped;
+
+    private long pending;
+
+    private long sent;
+
+    private long failed;
+
+    // Sent emails per second since the job was created
+    private double throughputPerSecond;
+
+    private String error;
+
+    private Instant createdAt;
+
+    private Instant queuedAt;
+}
@@ -0,0 +1,28 @@
+package com.example.Keycloak.mailjet.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BulkEmailRecipientDTO {
+
+    private String email;
+
+    private String name;
+
+    // Outbox status: PENDING, SENDING, SENT or FAILED
+    private String status;
+
+    private Integer attempts;
+
+    private String error;
+
+    private Instant sentAt;
+}
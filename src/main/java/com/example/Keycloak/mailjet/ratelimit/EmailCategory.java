@@ -0,0 +1,16 @@
+package com.example.Keycloak.mailjet.ratelimit;
+
+/**
+ * Traffic classes that share the Mailjet API rate limit fairly
+ */
+public enum EmailCategory {
+
+    // Registration verification emails, a user is waiting for these
+    VERIFICATION,
+
+    // Bulk announcement jobs
+    MARKETING,
+
+    // Single sends through POST /api/email/send
+    ADHOC
+}
@@ -0,0 +1,177 @@
+package com.example.Keycloak.mailjet.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket in front of every Mailjet API call
+ * Callers wait in one FIFO queue per email category and tokens are handed out round-robin across
+ * the categories with waiters, so a bulk job cannot starve verification emails or ad-hoc sends
+ * A 429 from Mailjet halves the refill rate; every successful call wins a little of it back
+ */
+@Component
+@Slf4j
+public class MailjetRateLimiter {
+
+    private final double configuredRate;
+    private final double minRate;
+    private final double burst;
+    private final int maxQueuedPerCategory;
+
+    private final Map<EmailCategory, Deque<Object>> waiters = new EnumMap<>(EmailCategory.class);
+    private final Map<EmailCategory, Timer> waitTimers = new EnumMap<>(EmailCategory.class);
+    private final Map<EmailCategory, Counter> rejections = new EnumMap<>(EmailCategory.class);
+    private final Counter rateLimitedResponses;
+
+    private double currentRate;
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+    // Category whose head waiter gets the next token
+    private int turn;
+
+    public MailjetRateLimiter(MeterRegistry meterRegistry,
+                              @Value("${mailjet.rate-limit.requests-per-second:5}") double requestsPerSecond,
+                              @Value("${mailjet.rate-limit.burst:10}") double burst,
+                              @Value("${mailjet.rate-limit.min-requests-per-second:0.5}") double minRequestsPerSecond,
+                              @Value("${mailjet.rate-limit.max-queued-per-category:200}") int maxQueuedPerCategory) {
+        this.configuredRate = requestsPerSecond;
+        this.currentRate = requestsPerSecond;
+        this.minRate = Math.min(minRequestsPerSecond, requestsPerSecond);
+        this.burst = Math.max(1, burst);
+        this.tokens = this.burst;
+        this.maxQueuedPerCategory = maxQueuedPerCategory;
+
+        for (EmailCategory category : EmailCategory.values()) {
+            Deque<Object> queue = new ArrayDeque<>();
+            waiters.put(category, queue);
+            waitTimers.put(category, Timer.builder("mailjet.ratelimit.wait")
+                    .description("Time spent waiting for a Mailjet API token")
+                    .tag("category", category.name().toLowerCase())
+                    .register(meterRegistry));
+            rejections.put(category, Counter.builder("mailjet.ratelimit.rejected")
+                    .description("Mailjet calls refused because the rate limit queue was full or the wait too long")
+                    .tag("category", category.name().toLowerCase())
+                    .register(meterRegistry));
+            Gauge.builder("mailjet.ratelimit.queued", this, limiter -> limiter.queued(category))
+                    .tag("category", category.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+        rateLimitedResponses = Counter.builder("mailjet.ratelimit.throttled")
+                .description("429 responses received from Mailjet")
+                .register(meterRegistry);
+        Gauge.builder("mailjet.ratelimit.rate", this, MailjetRateLimiter::getCurrentRate)
+                .description("Current allowed Mailjet API calls per second")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Waits for a token in the category's queue
+     *
+     * @return false if the category queue is full or no token became available within maxWaitMillis
+     */
+    public boolean acquire(EmailCategory category, long maxWaitMillis) throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        Object ticket = new Object();
+        synchronized (this) {
+            Deque<Object> queue = waiters.get(category);
+            if (queue.size() >= maxQueuedPerCategory) {
+                rejections.get(category).increment();
+                return false;
+            }
+            queue.addLast(ticket);
+            try {
+                while (true) {
+                    refill();
+                    if (tokens >= 1 && isMyTurn(category, ticket)) {
+                        tokens--;
+                        queue.pollFirst();
+                        advanceTurn(category);
+                        // Wake the next waiter, it may be able to take another token right away
+                        notifyAll();
+                        waitTimers.get(category).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        return true;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        queue.remove(ticket);
+                        notifyAll();
+                        rejections.get(category).increment();
+                        return false;
+                    }
+                    long untilToken = tokens >= 1 ? 1 : (long) Math.ceil((1 - tokens) / currentRate * 1000);
+                    TimeUnit.NANOSECONDS.timedWait(this, Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(Math.max(1, untilToken))));
+                }
+            } catch (InterruptedException e) {
+                queue.remove(ticket);
+                notifyAll();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Mailjet answered 429, slow down
+     */
+    public synchronized void onRateLimited() {
+        rateLimitedResponses.increment();
+        refill();
+        double previous = currentRate;
+        currentRate = Math.max(minRate, currentRate / 2);
+        // Drop the saved-up burst as well, it is what got us throttled
+        tokens = Math.min(tokens, 0);
+        log.warn("⚠️ Mailjet rate limit hit, lowering request rate from {} to {}/s", previous, currentRate);
+    }
+
+    /**
+     * A call went through, creep back towards the configured rate
+     */
+    public synchronized void onSuccess() {
+        if (currentRate < configuredRate) {
+            refill();
+            currentRate = Math.min(configuredRate, currentRate + configuredRate * 0.05);
+        }
+    }
+
+    public synchronized double getCurrentRate() {
+        return currentRate;
+    }
+
+    private synchronized int queued(EmailCategory category) {
+        return waiters.get(category).size();
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefillNanos) / 1e9 * currentRate);
+        lastRefillNanos = now;
+    }
+
+    // The next token goes to the first waiter of the first non-empty category at or after the turn pointer
+    private boolean isMyTurn(EmailCategory category, Object ticket) {
+        EmailCategory[] categories = EmailCategory.values();
+        for (int i = 0; i < categories.length; i++) {
+            EmailCategory candidate = categories[(turn + i) % categories.length];
+            Deque<Object> queue = waiters.get(candidate);
+            if (!queue.isEmpty()) {
+                return candidate == category && queue.peekFirst() == ticket;
+            }
+        }
+        return false;
+    }
+
+    private void advanceTurn(EmailCategory served) {
+        turn = (served.ordinal() + 1) % EmailCategory.values().length;
+    }
+}
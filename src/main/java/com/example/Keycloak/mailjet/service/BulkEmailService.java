@@ -0,0 +1,31 @@
+package com.example.Keycloak.mailjet.service;
+
+import com.example.Keycloak.mailjet.model.dto.BulkEmailJobDTO;
+import com.example.Keycloak.mailjet.model.dto.BulkEmailRecipientDTO;
+import com.example.Keycloak.mailjet.model.dto.BulkEmailRequestDTO;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+public interface BulkEmailService {
+
+    /**
+     * Starts a job for an uploaded recipient list, one recipient per line
+     * NDJSON lines look like {"email":"a@b.c","name":"Ann"}, CSV lines like a@b.c,Ann (header optional)
+     *
+     * @param createdBy Keycloak user id of the caller, null when security is off (dev profile)
+     */
+    BulkEmailJobDTO startUploadJob(BulkEmailRequestDTO request, InputStream recipients, boolean csv, String createdBy) throws IOException;
+
+    /**
+     * Starts a job for every user of the organization
+     *
+     * @param createdBy Keycloak user id of the caller, null when security is off (dev profile)
+     */
+    BulkEmailJobDTO startOrganizationJob(BulkEmailRequestDTO request, String organizationId, String createdBy);
+
+    BulkEmailJobDTO getJob(String jobId);
+
+    List<BulkEmailRecipientDTO> getRecipients(String jobId, int page, int size);
+}
@@ -0,0 +1,13 @@
+package com.example.Keycloak.mailjet.service;
+
+import java.util.Locale;
+import java.util.Map;
+
+public interface EmailTemplateService {
+
+    /**
+     * Renders a template such as "verification.html" from the template location
+     * The most specific locale variant wins, e.g. verification_de_AT.html, then verification_de.html, then verification.html
+     */
+    String render(String templateName, Locale locale, Map<String, String> variables);
+}
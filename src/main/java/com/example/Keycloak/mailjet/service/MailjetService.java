@@ -3,6 +3,7 @@ package com.example.Keycloak.mailjet.service;
 
 import com.example.Keycloak.mailjet.model.dto.EmailRequestDTO;
 import com.example.Keycloak.mailjet.model.dto.EmailResponseDTO;
+import com.example.Keycloak.mailjet.ratelimit.EmailCategory;
 
 public interface MailjetService {
     
@@ -11,4 +12,11 @@ public interface MailjetService {
     boolean isConfigured();
 
     void sendVerificationEmail(String toEmail, String firstName, String verificationLink);
+
+    /**
+     * Stores the email in the outbox, it is sent in the background by the outbox dispatcher
+     *
+     * @return false if an email with the same dedup key is still waiting to be sent
+     */
+    boolean queueEmail(EmailCategory category, String dedupKey, String toEmail, String toName, String subject, String textPart, String htmlPart);
 }
@@ -0,0 +1,373 @@
+package com.example.Keycloak.mailjet.service.impl;
+
+import com.example.Keycloak.mailjet.model.dto.BulkEmailJobDTO;
+import com.example.Keycloak.mailjet.model.dto.BulkEmailRecipientDTO;
+import com.example.Keycloak.mailjet.model.dto.BulkEmailRequestDTO;
+import com.example.Keycloak.mailjet.ratelimit.EmailCategory;
+import com.example.Keycloak.mailjet.service.BulkEmailService;
+import com.example.Keycloak.mailjet.service.EmailTemplateService;
+import com.example.Keycloak.model.entity.EmailBulkJob;
+import com.example.Keycloak.model.entity.EmailOutboxMessage;
+import com.example.Keycloak.model.entity.UserAccountStatus;
+import com.example.Keycloak.repository.EmailBulkJobRepository;
+import com.example.Keycloak.repository.EmailOutboxRepository;
+import com.example.Keycloak.repository.UserAccountStatusRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Turns a recipient list into email_outbox messages tagged with a job id
+ * Uploaded lists are spooled to a temp file and read line by line, organization jobs page through
+ * user_account_status, so memory stays flat whatever the list size
+ * The outbox dispatcher then sends them in batches, progress is read back from the outbox
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BulkEmailServiceImpl implements BulkEmailService {
+
+    private static final String CSV_HEADER = "email";
+    // Each CSV record as its columns, RFC 4180 quoting
+    private static final ObjectReader CSV_ROWS = new CsvMapper()
+            .readerForArrayOf(String.class)
+            .with(CsvParser.Feature.WRAP_AS_ARRAY)
+            .with(CsvParser.Feature.TRIM_SPACES)
+            .with(CsvParser.Feature.SKIP_EMPTY_LINES);
+
+    private final EmailBulkJobRepository emailBulkJobRepository;
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final UserAccountStatusRepository userAccountStatusRepository;
+    private final EmailTemplateService emailTemplateService;
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${mailjet.bulk.max-concurrent-jobs:2}")
+    private int maxConcurrentJobs;
+
+    @Value("${mailjet.bulk.max-waiting-jobs:20}")
+    private int maxWaitingJobs;
+
+    @Value("${mailjet.bulk.insert-batch-size:500}")
+    private int insertBatchSize;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(maxConcurrentJobs, maxConcurrentJobs, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxWaitingJobs), runnable -> {
+                    Thread thread = new Thread(runnable, "bulk-email-job-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public BulkEmailJobDTO startUploadJob(BulkEmailRequestDTO request, InputStream recipients, boolean csv, String createdBy) throws IOException {
+        // Spooled to disk so the request ends as soon as the upload is complete
+        Path file = Files.createTempFile("bulk-email-", csv ? ".csv" : ".ndjson");
+        Files.copy(recipients, file, StandardCopyOption.REPLACE_EXISTING);
+
+        EmailBulkJob job = createJob(request, "upload", null, createdBy);
+        submit(job, () -> {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                queueRecipients(job, request, reader, csv);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }, file);
+        return toDTO(job);
+    }
+
+    @Override
+    public BulkEmailJobDTO startOrganizationJob(BulkEmailRequestDTO request, String organizationId, String createdBy) {
+        EmailBulkJob job = createJob(request, "organization:" + organizationId, organizationId, createdBy);
+        submit(job, () -> queueOrganization(job, request, organizationId), null);
+        return toDTO(job);
+    }
+
+    @Override
+    public BulkEmailJobDTO getJob(String jobId) {
+        return emailBulkJobRepository.findById(jobId).map(this::toDTO).orElse(null);
+    }
+
+    @Override
+    public List<BulkEmailRecipientDTO> getRecipients(String jobId, int page, int size) {
+        Slice<EmailOutboxMessage> messages = emailOutboxRepository.findByJobId(jobId,
+                PageRequest.of(page, Math.min(size, 1000), Sort.by("_id")));
+        return messages.map(message -> BulkEmailRecipientDTO.builder()
+                .email(message.getToEmail())
+                .name(message.getToName())
+                .status(message.getStatus())
+                .attempts(message.getAttempts())
+                .error(message.getLastError())
+                .sentAt(message.getSentAt())
+                .build()).getContent();
+    }
+
+    private EmailBulkJob createJob(BulkEmailRequestDTO request, String source, String organizationId, String createdBy) {
+        EmailBulkJob job = EmailBulkJob.builder()
+                .id(UUID.randomUUID().toString())
+                .source(source)
+                .organizationId(organizationId)
+                .createdBy(createdBy)
+                .subject(request.getSubject())
+                .status(EmailBulkJob.QUEUEING)
+                .createdAt(Instant.now())
+                .build();
+        return emailBulkJobRepository.insert(job);
+    }
+
+    private void submit(EmailBulkJob job, JobBody body, Path file) throws RejectedExecutionException {
+        try {
+            executor.execute(() -> {
+                try {
+                    body.run();
+                    job.setStatus(EmailBulkJob.QUEUED);
+                    job.setQueuedAt(Instant.now());
+                    log.info("📨 Bulk email job {} queued {} recipients, skipped {}", job.getId(), job.getRecipients(), job.getSkipped());
+                } catch (Exception e) {
+                    log.error("Bulk email job {} failed: ", job.getId(), e);
+                    job.setStatus(EmailBulkJob.FAILED);
+                    job.setError(e.getMessage());
+                }
+                emailBulkJobRepository.save(job);
+            });
+        } catch (RejectedExecutionException e) {
+            job.setStatus(EmailBulkJob.FAILED);
+            job.setError("Too many bulk email jobs in progress");
+            emailBulkJobRepository.save(job);
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException ignored) {
+                    // Temp file, the OS cleans it up eventually
+                }
+            }
+            throw e;
+        }
+    }
+
+    private void queueRecipients(EmailBulkJob job, BulkEmailRequestDTO request, BufferedReader reader, boolean csv) throws IOException {
+        String htmlPart = renderHtml(request);
+        List<EmailOutboxMessage> chunk = new ArrayList<>(insertBatchSize);
+        readRecipients(reader, csv, objectMapper, recipient -> {
+            if (recipient == null || recipient.getEmail() == null || recipient.getEmail().indexOf('@') < 1) {
+                job.setSkipped(job.getSkipped() + 1);
+                return;
+            }
+            chunk.add(toMessage(job, request, htmlPart, recipient.getEmail(), recipient.getName()));
+            if (chunk.size() == insertBatchSize) {
+                flush(job, chunk);
+            }
+        });
+        flush(job, chunk);
+    }
+
+    /**
+     * Hands each row of an uploaded recipient list to the consumer, null for a row that cannot be read
+     * CSV goes through a real parser, so quoted names may contain commas, quotes and line breaks;
+     * a header row (first column "email") and empty rows are skipped
+     */
+    static void readRecipients(BufferedReader reader, boolean csv, ObjectMapper objectMapper,
+                               Consumer<BulkEmailRecipientDTO> recipients) throws IOException {
+        if (!csv) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                BulkEmailRecipientDTO recipient;
+                try {
+                    recipient = objectMapper.readValue(line, BulkEmailRecipientDTO.class);
+                } catch (JsonProcessingException e) {
+                    recipient = null;
+                }
+                recipients.accept(recipient);
+            }
+            return;
+        }
+
+        try (MappingIterator<String[]> rows = CSV_ROWS.readValues(reader)) {
+            boolean first = true;
+            while (rows.hasNextValue()) {
+                String[] columns = rows.nextValue();
+                String email = column(columns, 0);
+                if (email == null && column(columns, 1) == null) {
+                    continue;
+                }
+                if (first && CSV_HEADER.equalsIgnoreCase(email)) {
+                    first = false;
+                    continue;
+                }
+                first = false;
+                recipients.accept(BulkEmailRecipientDTO.builder()
+                        .email(email)
+                        .name(column(columns, 1))
+                        .build());
+            }
+        }
+    }
+
+    private void queueOrganization(EmailBulkJob job, BulkEmailRequestDTO request, String organizationId) {
+        String htmlPart = renderHtml(request);
+        List<EmailOutboxMessage> chunk = new ArrayList<>(insertBatchSize);
+        // Slices skip the count query a Page would run for every chunk
+        Slice<UserAccountStatus> users;
+        int page = 0;
+        do {
+            users = userAccountStatusRepository.findByOrganizationId(organizationId,
+                    PageRequest.of(page++, insertBatchSize, Sort.by("_id")));
+            for (UserAccountStatus user : users) {
+                chunk.add(toMessage(job, request, htmlPart, user.getEmail(), null));
+            }
+            flush(job, chunk);
+        } while (users.hasNext());
+    }
+
+    private EmailOutboxMessage toMessage(EmailBulkJob job, BulkEmailRequestDTO request, String htmlPart,
+                                         String email, String name) {
+        Instant now = Instant.now();
+        return EmailOutboxMessage.builder()
+                .dedupKey("bulk:" + job.getId() + ":" + email.trim().toLowerCase(Locale.ROOT))
+                .jobId(job.getId())
+                .category(EmailCategory.MARKETING.name())
+                .toEmail(email.trim())
+                .toName(name)
+                .subject(request.getSubject())
+                .textPart(request.getBody())
+                .htmlPart(htmlPart)
+                .nextAttemptAt(now)
+                .createdAt(now)
+                .build();
+    }
+
+    // One unordered bulk insert per chunk; duplicate recipients hit the dedup index and are counted as skipped
+    private void flush(EmailBulkJob job, List<EmailOutboxMessage> chunk) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        int inserted;
+        try {
+            inserted = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, EmailOutboxMessage.class)
+                    .insert(chunk)
+                    .execute()
+                    .getInsertedCount();
+        } catch (BulkOperationException e) {
+            boolean onlyDuplicates = e.getErrors().stream().allMatch(error -> error.getCode() == 11000);
+            if (!onlyDuplicates) {
+                throw e;
+            }
+            inserted = e.getResult().getInsertedCount();
+        }
+        job.setRecipients(job.getRecipients() + inserted);
+        job.setSkipped(job.getSkipped() + chunk.size() - inserted);
+        chunk.clear();
+        // Keeps the recipient count visible while a large list is still being read
+        emailBulkJobRepository.save(job);
+    }
+
+    private String renderHtml(BulkEmailRequestDTO request) {
+        // Same body for every recipient, rendered once per job
+        return emailTemplateService.render("message.html", Locale.ROOT, Map.of("body", request.getBody()));
+    }
+
+    private static String column(String[] columns, int index) {
+        return index < columns.length && !columns[index].isEmpty() ? columns[index] : null;
+    }
+
+    private BulkEmailJobDTO toDTO(EmailBulkJob job) {
+        long pending = 0;
+        long sent = 0;
+        long failed = 0;
+        Date lastSentAt = null;
+        Aggregation progress = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("jobId").is(job.getId())),
+                Aggregation.group("status").count().as("count").max("sentAt").as("lastSentAt"));
+        for (Document row : mongoTemplate.aggregate(progress, EmailOutboxMessage.class, Document.class)) {
+            long count = ((Number) row.get("count")).longValue();
+            switch (row.getString("_id")) {
+                case EmailOutboxMessage.SENT -> {
+                    sent = count;
+                    lastSentAt = row.getDate("lastSentAt");
+                }
+                case EmailOutboxMessage.FAILED -> failed = count;
+                default -> pending += count;
+            }
+        }
+
+        double throughput = 0;
+        if (lastSentAt != null) {
+            long millis = Duration.between(job.getCreatedAt(), lastSentAt.toInstant()).toMillis();
+            throughput = sent * 1000.0 / Math.max(millis, 1);
+        }
+
+        return BulkEmailJobDTO.builder()
+                .jobId(job.getId())
+                .category(EmailCategory.MARKETING.name())
+                .source(job.getSource())
+                .status(job.getStatus())
+                .recipients(job.getRecipients())
+                .skipped(job.getSkipped())
+                .pending(pending)
+                .sent(sent)
+                .failed(failed)
+                .throughputPerSecond(throughput)
+                .error(job.getError())
+                .createdAt(job.getCreatedAt())
+                .queuedAt(job.getQueuedAt())
+                .build();
+    }
+
+    @FunctionalInterface
+    private interface JobBody {
+        void run() throws Exception;
+    }
+}
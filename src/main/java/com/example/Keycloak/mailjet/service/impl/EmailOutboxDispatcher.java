@@ -0,0 +1,315 @@
+package com.example.Keycloak.mailjet.service.impl;
+
+import com.example.Keycloak.mailjet.ratelimit.EmailCategory;
+import com.example.Keycloak.mailjet.ratelimit.MailjetRateLimiter;
+import com.example.Keycloak.model.entity.EmailOutboxMessage;
+import com.mailjet.client.MailjetClient;
+import com.mailjet.client.MailjetRequest;
+import com.mailjet.client.MailjetResponse;
+import com.mailjet.client.errors.MailjetRateLimitException;
+import com.mailjet.client.errors.MailjetServerException;
+import com.mailjet.client.resource.Emailv31;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sends queued emails from the email_outbox collection through the Mailjet Send API v3.1
+ * Up to batch-size messages (Mailjet allows 50) go out in a single Emailv31.MESSAGES request,
+ * so throughput grows with batch size rather than with the number of HTTP calls
+ * Messages are claimed in bulk with a lease and a claim token, so several application instances can poll the same outbox
+ * Every API call takes a token from MailjetRateLimiter, shared with the ad-hoc send endpoint
+ * Rounds run on the dispatcher's own thread, waiting for tokens never holds up the shared scheduler thread
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EmailOutboxDispatcher {
+
+    // Mailjet's per-request message limit for the Send API v3.1
+    private static final int MAILJET_MAX_MESSAGES = 50;
+    private static final EmailCategory[] OUTBOX_CATEGORIES = {EmailCategory.VERIFICATION, EmailCategory.MARKETING};
+
+    private final MailjetClient mailjetClient;
+    private final MongoTemplate mongoTemplate;
+    private final MailjetRateLimiter mailjetRateLimiter;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private ExecutorService executor;
+
+    @Value("${mailjet.from.email}")
+    private String fromEmail;
+
+    @Value("${mailjet.from.name:API Test}")
+    private String fromName;
+
+    @Value("${mailjet.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${mailjet.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${mailjet.outbox.lease-ms:60000}")
+    private long leaseMillis;
+
+    @Value("${mailjet.outbox.min-backoff-ms:2000}")
+    private long minBackoffMillis;
+
+    @Value("${mailjet.outbox.max-backoff-ms:600000}")
+    private long maxBackoffMillis;
+
+    @Value("${mailjet.outbox.max-token-wait-ms:5000}")
+    private long maxTokenWaitMillis;
+
+    @PostConstruct
+    public void start() {
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "email-outbox-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Hands a dispatch round to the dispatcher's thread unless one is still running
+     */
+    @Scheduled(fixedDelayString = "${mailjet.outbox.poll-interval-ms:1000}")
+    public void trigger() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                dispatch();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                // Claimed messages stay leased, the next round picks them up once the lease runs out
+                log.error("Email outbox dispatch failed: ", e);
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    private void dispatch() throws InterruptedException {
+        // Alternate between categories so a large bulk job never holds back verification emails,
+        // and keep draining while full batches are available
+        boolean more;
+        do {
+            more = false;
+            for (EmailCategory category : OUTBOX_CATEGORIES) {
+                List<EmailOutboxMessage> batch = claimBatch(category);
+                if (batch.isEmpty()) {
+                    continue;
+                }
+                if (!mailjetRateLimiter.acquire(category, maxTokenWaitMillis)) {
+                    release(batch, Instant.now());
+                    return;
+                }
+                if (!send(batch)) {
+                    return;
+                }
+                more |= batch.size() == effectiveBatchSize();
+            }
+        } while (more);
+    }
+
+    private int effectiveBatchSize() {
+        return Math.max(1, Math.min(batchSize, MAILJET_MAX_MESSAGES));
+    }
+
+    /**
+     * Claims up to one batch in three round trips whatever its size: read candidate ids, claim them with one
+     * updateMany that repeats the eligibility check and stamps a claim token, then load what this call won
+     * Candidates another instance claimed in between fail the check and are simply not part of the batch
+     */
+    private List<EmailOutboxMessage> claimBatch(EmailCategory category) {
+        Instant now = Instant.now();
+        // Messages queued before categories existed are verification emails
+        Criteria inCategory = category == EmailCategory.VERIFICATION
+                ? Criteria.where("category").in(category.name(), null)
+                : Criteria.where("category").is(category.name());
+        Criteria claimable = new Criteria().andOperator(inCategory, new Criteria().orOperator(
+                Criteria.where("status").is(EmailOutboxMessage.PENDING).and("nextAttemptAt").lte(now),
+                // Lease of a dispatcher that died mid-send ran out
+                Criteria.where("status").is(EmailOutboxMessage.SENDING).and("lockedUntil").lte(now)));
+
+        Query candidates = new Query(claimable).limit(effectiveBatchSize());
+        candidates.fields().include("_id");
+        List<String> ids = mongoTemplate.find(candidates, EmailOutboxMessage.class).stream()
+                .map(EmailOutboxMessage::getId)
+                .toList();
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        String claimToken = UUID.randomUUID().toString();
+        Update claim = new Update()
+                .set("status", EmailOutboxMessage.SENDING)
+                .set("lockedUntil", now.plusMillis(leaseMillis))
+                .set("claimToken", claimToken)
+                .inc("attempts", 1);
+        long claimed = mongoTemplate.updateMulti(
+                new Query(new Criteria().andOperator(Criteria.where("_id").in(ids), claimable)),
+                claim, EmailOutboxMessage.class).getModifiedCount();
+        if (claimed == 0) {
+            return List.of();
+        }
+        return mongoTemplate.find(Query.query(Criteria.where("_id").in(ids).and("claimToken").is(claimToken)),
+                EmailOutboxMessage.class);
+    }
+
+    /**
+     * @return false when Mailjet asked to slow down and this round should stop
+     */
+    private boolean send(List<EmailOutboxMessage> batch) {
+        JSONArray messages = new JSONArray();
+        for (EmailOutboxMessage message : batch) {
+            JSONObject to = new JSONObject().put("Email", message.getToEmail());
+            if (message.getToName() != null) {
+                to.put("Name", message.getToName());
+            }
+            messages.put(new JSONObject()
+                    .put(Emailv31.Message.FROM, new JSONObject()
+                            .put("Email", fromEmail)
+                            .put("Name", fromName))
+                    .put(Emailv31.Message.TO, new JSONArray().put(to))
+                    .put(Emailv31.Message.SUBJECT, message.getSubject())
+                    .put(Emailv31.Message.TEXTPART, message.getTextPart())
+                    .put(Emailv31.Message.HTMLPART, message.getHtmlPart())
+                    // Echoed back in the per-message result
+                    .put(Emailv31.Message.CUSTOMID, message.getId()));
+        }
+
+        // mailjet-client turns 429 and 5xx into exceptions; a 400 of the send call is returned with per-message results
+        MailjetResponse response;
+        try {
+            response = mailjetClient.post(new MailjetRequest(Emailv31.resource).property(Emailv31.MESSAGES, messages));
+        } catch (MailjetRateLimitException e) {
+            // The limiter slows down; the batch goes back without using up an attempt
+            mailjetRateLimiter.onRateLimited();
+            release(batch, Instant.now().plusMillis(minBackoffMillis));
+            return false;
+        } catch (MailjetServerException e) {
+            log.warn("⚠️ Mailjet server error for {} outbox emails: {}", batch.size(), e.getMessage());
+            retryAll(batch, "Mailjet server error: " + e.getMessage());
+            return true;
+        } catch (Exception e) {
+            log.warn("⚠️ Mailjet request for {} outbox emails failed: {}", batch.size(), e.getMessage());
+            retryAll(batch, e.getMessage());
+            return true;
+        }
+        mailjetRateLimiter.onSuccess();
+
+        applyResults(batch, response);
+        return true;
+    }
+
+    // 200 means every message was accepted, 400 carries a success or error entry per message
+    private void applyResults(List<EmailOutboxMessage> batch, MailjetResponse response) {
+        Map<String, JSONObject> resultsById = new HashMap<>();
+        JSONArray results = new JSONObject(response.getRawResponseContent()).optJSONArray("Messages");
+        if (results != null) {
+            for (int i = 0; i < results.length(); i++) {
+                JSONObject result = results.getJSONObject(i);
+                resultsById.put(result.optString("CustomID"), result);
+            }
+        }
+
+        int sent = 0;
+        int failed = 0;
+        for (EmailOutboxMessage message : batch) {
+            JSONObject result = resultsById.get(message.getId());
+            if (result == null) {
+                retry(message, "No result for message, status " + response.getStatus());
+            } else if ("success".equals(result.optString("Status"))) {
+                JSONArray to = result.optJSONArray("To");
+                String messageId = to != null && to.length() > 0 ? to.getJSONObject(0).optString("MessageID", null) : null;
+                markSent(message, messageId);
+                sent++;
+            } else {
+                // Validation errors are permanent, resending the same message will not help
+                markFailed(message, String.valueOf(result.optJSONArray("Errors")));
+                failed++;
+            }
+        }
+        log.info("📧 Outbox batch of {} emails sent - Sent: {}, Failed: {}, Retry: {}",
+                batch.size(), sent, failed, batch.size() - sent - failed);
+    }
+
+    private void retryAll(List<EmailOutboxMessage> batch, String error) {
+        for (EmailOutboxMessage message : batch) {
+            retry(message, error);
+        }
+    }
+
+    private void retry(EmailOutboxMessage message, String error) {
+        if (message.getAttempts() >= maxAttempts) {
+            markFailed(message, error);
+            return;
+        }
+        long backoff = Math.min(minBackoffMillis << Math.min(message.getAttempts() - 1, 20), maxBackoffMillis);
+        update(message, new Update()
+                .set("status", EmailOutboxMessage.PENDING)
+                .set("nextAttemptAt", Instant.now().plus(Duration.ofMillis(backoff)))
+                .set("lastError", error)
+                .unset("lockedUntil"));
+    }
+
+    // Rate limited: back to the queue without using up an attempt
+    private void release(List<EmailOutboxMessage> batch, Instant nextAttemptAt) {
+        Query query = Query.query(Criteria.where("_id").in(batch.stream().map(EmailOutboxMessage::getId).toList()));
+        mongoTemplate.updateMulti(query, new Update()
+                .set("status", EmailOutboxMessage.PENDING)
+                .set("nextAttemptAt", nextAttemptAt)
+                .inc("attempts", -1)
+                .unset("lockedUntil"), EmailOutboxMessage.class);
+    }
+
+    private void markSent(EmailOutboxMessage message, String messageId) {
+        update(message, new Update()
+                .set("status", EmailOutboxMessage.SENT)
+                .set("messageId", messageId)
+                .set("sentAt", Instant.now())
+                .unset("lockedUntil")
+                .unset("lastError"));
+    }
+
+    private void markFailed(EmailOutboxMessage message, String error) {
+        log.error("Giving up on outbox email {} to {}: {}", message.getId(), message.getToEmail(), error);
+        update(message, new Update()
+                .set("status", EmailOutboxMessage.FAILED)
+                .set("lastError", error)
+                .unset("lockedUntil"));
+    }
+
+    private void update(EmailOutboxMessage message, Update update) {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(message.getId())), update, EmailOutboxMessage.class);
+    }
+}
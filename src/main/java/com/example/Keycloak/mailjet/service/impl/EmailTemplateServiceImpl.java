@@ -0,0 +1,175 @@
+package com.example.Keycloak.mailjet.service.impl;
+
+import com.example.Keycloak.mailjet.service.EmailTemplateService;
+import com.example.Keycloak.mailjet.template.CompiledTemplate;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Loads email templates once, keeps them compiled in memory and renders into a per-thread buffer
+ * With a reload interval set, template files are re-read when their modification time changes,
+ * so wording can be adjusted without a restart (point mailjet.templates.location at a file: directory)
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EmailTemplateServiceImpl implements EmailTemplateService {
+
+    private static final ThreadLocal<StringBuilder> BUFFERS = ThreadLocal.withInitial(() -> new StringBuilder(8 * 1024));
+    // Larger buffers are dropped after use so one huge email does not pin memory per thread
+    private static final int MAX_RETAINED_BUFFER = 256 * 1024;
+    private static final int MAX_VARIANT_LOOKUPS = 1000;
+
+    private final ResourceLoader resourceLoader;
+
+    @Value("${mailjet.templates.location:classpath:email-templates/}")
+    private String location;
+
+    @Value("${mailjet.templates.reload-interval-ms:0}")
+    private long reloadIntervalMillis;
+
+    // Template name and locale to the best existing variant; bounded because the locale comes from Accept-Language
+    private Cache<String, String> variants;
+    // Compiled templates keyed by variant, at most one entry per template file
+    private final Map<String, CachedTemplate> templates = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder().maximumSize(MAX_VARIANT_LOOKUPS);
+        if (reloadIntervalMillis > 0) {
+            // Lets a variant added for a locale replace the fallback it used so far
+            builder.expireAfterWrite(Duration.ofMillis(reloadIntervalMillis));
+        }
+        variants = builder.build();
+    }
+
+    @Override
+    public String render(String templateName, Locale locale, Map<String, String> variables) {
+        CompiledTemplate template = resolve(templateName, locale == null ? Locale.ROOT : locale);
+        StringBuilder buffer = BUFFERS.get();
+        buffer.setLength(0);
+        template.renderTo(variables, buffer);
+        String rendered = buffer.toString();
+        if (buffer.capacity() > MAX_RETAINED_BUFFER) {
+            BUFFERS.remove();
+        }
+        return rendered;
+    }
+
+    private CompiledTemplate resolve(String templateName, Locale locale) {
+        String key = templateName + "@" + locale;
+        String variant = variants.get(key, k -> findVariant(templateName, locale));
+        CachedTemplate cached = templates.get(variant);
+        if (cached != null && !cached.isStale(reloadIntervalMillis)) {
+            return cached.template;
+        }
+        cached = templates.compute(variant, (k, current) -> {
+            if (current != null && !current.isStale(reloadIntervalMillis)) {
+                return current;
+            }
+            if (current != null && !current.hasChanged()) {
+                current.markChecked();
+                return current;
+            }
+            return load(variant);
+        });
+        if (cached == null) {
+            // The variant file was removed, fall back to the next best one
+            variants.invalidateAll();
+            return resolve(templateName, locale);
+        }
+        return cached.template;
+    }
+
+    private String findVariant(String templateName, Locale locale) {
+        for (String candidate : candidates(templateName, locale)) {
+            if (templates.containsKey(candidate) || resourceLoader.getResource(location + candidate).exists()) {
+                return candidate;
+            }
+        }
+        throw new IllegalArgumentException("Email template not found: " + templateName);
+    }
+
+    // Null if the file no longer exists
+    private CachedTemplate load(String variant) {
+        Resource resource = resourceLoader.getResource(location + variant);
+        if (!resource.exists()) {
+            return null;
+        }
+        try (InputStream in = resource.getInputStream()) {
+            String source = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            CompiledTemplate template = CompiledTemplate.compile(source, variant.endsWith(".html"));
+            log.info("Loaded email template {}", variant);
+            return new CachedTemplate(template, resource, lastModified(resource));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read email template " + variant, e);
+        }
+    }
+
+    // verification_de_AT.html, verification_de.html, verification.html
+    private static List<String> candidates(String templateName, Locale locale) {
+        int dot = templateName.lastIndexOf('.');
+        String base = dot < 0 ? templateName : templateName.substring(0, dot);
+        String extension = dot < 0 ? "" : templateName.substring(dot);
+        List<String> candidates = new ArrayList<>(3);
+        if (!locale.getLanguage().isEmpty()) {
+            if (!locale.getCountry().isEmpty()) {
+                candidates.add(base + "_" + locale.getLanguage() + "_" + locale.getCountry() + extension);
+            }
+            candidates.add(base + "_" + locale.getLanguage() + extension);
+        }
+        candidates.add(templateName);
+        return candidates;
+    }
+
+    private static long lastModified(Resource resource) {
+        try {
+            return resource.lastModified();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static final class CachedTemplate {
+
+        private final CompiledTemplate template;
+        private final Resource resource;
+        private final long lastModified;
+        private volatile long checkedAt = System.currentTimeMillis();
+
+        private CachedTemplate(CompiledTemplate template, Resource resource, long lastModified) {
+            this.template = template;
+            this.resource = resource;
+            this.lastModified = lastModified;
+        }
+
+        private boolean isStale(long reloadIntervalMillis) {
+            return reloadIntervalMillis > 0 && System.currentTimeMillis() - checkedAt >= reloadIntervalMillis;
+        }
+
+        private boolean hasChanged() {
+            return !resource.exists() || lastModified(resource) != lastModified;
+        }
+
+        private void markChecked() {
+            checkedAt = System.currentTimeMillis();
+        }
+    }
+}
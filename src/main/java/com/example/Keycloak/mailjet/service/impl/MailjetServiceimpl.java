@@ -3,24 +3,53 @@ package com.example.Keycloak.mailjet.service.impl;
 
 import com.example.Keycloak.mailjet.model.dto.EmailRequestDTO;
 import com.example.Keycloak.mailjet.model.dto.EmailResponseDTO;
+import com.example.Keycloak.mailjet.ratelimit.EmailCategory;
+import com.example.Keycloak.mailjet.ratelimit.MailjetRateLimiter;
+import com.example.Keycloak.mailjet.service.EmailTemplateService;
 import com.example.Keycloak.mailjet.service.MailjetService;
-import com.mailjet.client.ClientOptions;
+import com.example.Keycloak.model.entity.EmailOutboxMessage;
+import com.example.Keycloak.repository.EmailOutboxRepository;
 import com.mailjet.client.MailjetClient;
 import com.mailjet.client.MailjetRequest;
 import com.mailjet.client.MailjetResponse;
 import com.mailjet.client.errors.MailjetException;
+import com.mailjet.client.errors.MailjetRateLimitException;
+import com.mailjet.client.errors.MailjetServerException;
 import com.mailjet.client.resource.Emailv31;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
 @Service
+@RequiredArgsConstructor
 public class MailjetServiceimpl implements MailjetService {
     
     private static final Logger logger = LoggerFactory.getLogger(MailjetServiceimpl.class);
+
+    // Shared, pooled client from MailjetConfig
+    private final MailjetClient mailjetClient;
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final MongoTemplate mongoTemplate;
+    private final EmailTemplateService emailTemplateService;
+    private final MailjetRateLimiter mailjetRateLimiter;
+
+    @Value("${mailjet.rate-limit.max-wait-ms:5000}")
+    private long maxTokenWaitMillis;
     
     @Value("${mailjet.api.key}")
     private String apiKey;
@@ -39,14 +68,6 @@ public class MailjetServiceimpl implements MailjetService {
         try {
             logger.info("Attempting to send email to: {}", emailRequest.getTo());
             
-            // Create Mailjet client
-            MailjetClient client = new MailjetClient(
-                ClientOptions.builder()
-                    .apiKey(apiKey)
-                    .apiSecretKey(apiSecret)
-                    .build()
-            );
-            
             // Build email request
             MailjetRequest request = new MailjetRequest(Emailv31.resource)
                 .property(Emailv31.MESSAGES, new JSONArray()
@@ -59,15 +80,20 @@ public class MailjetServiceimpl implements MailjetService {
                                 .put("Email", emailRequest.getTo())))
                         .put(Emailv31.Message.SUBJECT, emailRequest.getSubject())
                         .put(Emailv31.Message.TEXTPART, emailRequest.getBody())
-                        .put(Emailv31.Message.HTMLPART, 
-                            "<div style='font-family: Arial, sans-serif; line-height: 1.6;'>" +
-                            emailRequest.getBody().replace("\n", "<br>") +
-                            "</div>")));
-            
-            // Send email
-            MailjetResponse response = client.post(request);
+                        .put(Emailv31.Message.HTMLPART,
+                            emailTemplateService.render("message.html", LocaleContextHolder.getLocale(), Map.of("body", emailRequest.getBody())))));
             
+            // Ad-hoc sends share the Mailjet rate limit with the outbox dispatcher
+            if (!mailjetRateLimiter.acquire(EmailCategory.ADHOC, maxTokenWaitMillis)) {
+                logger.warn("Email rate limit reached, not sending to: {}", emailRequest.getTo());
+                return EmailResponseDTO.rateLimited("Email rate limit reached, please retry later");
+            }
+
+            // Send email; mailjet-client throws MailjetRateLimitException for 429 and MailjetServerException for 5xx
+            MailjetResponse response = mailjetClient.post(request);
+
             if (response.getStatus() == 200) {
+                mailjetRateLimiter.onSuccess();
                 JSONArray messages = response.getData();
                 if (messages.length() > 0) {
                     JSONObject message = messages.getJSONObject(0);
@@ -86,6 +112,16 @@ public class MailjetServiceimpl implements MailjetService {
                 return EmailResponseDTO.error(errorMessage);
             }
             
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return EmailResponseDTO.error("Interrupted while waiting for the email rate limit");
+        } catch (MailjetRateLimitException e) {
+            mailjetRateLimiter.onRateLimited();
+            return EmailResponseDTO.rateLimited("Mailjet rate limit reached, please retry later");
+        } catch (MailjetServerException e) {
+            String errorMessage = "Mailjet server error, please retry later: " + e.getMessage();
+            logger.warn(errorMessage);
+            return EmailResponseDTO.error(errorMessage);
         } catch (MailjetException e) {
             String errorMessage = "Mailjet API error: " + e.getMessage();
             logger.error(errorMessage, e);
@@ -109,119 +145,66 @@ public class MailjetServiceimpl implements MailjetService {
 
     @Override
     public void sendVerificationEmail(String toEmail, String firstName, String verificationLink) {
-        try {
-            logger.info("Sending verification email to: {}", toEmail);
+        logger.info("Queueing verification email to: {}", toEmail);
 
-            String subject = "Verify Your Email Address - Keycloak Demo";
-            String htmlBody = buildVerificationEmailHtml(firstName, verificationLink);
-            String textBody = buildVerificationEmailText(firstName, verificationLink);
+        String subject = "Verify Your Email Address - Keycloak Demo";
+        // Map.of rejects nulls, the first name is optional
+        Map<String, String> variables = new HashMap<>();
+        variables.put("firstName", firstName);
+        variables.put("verificationLink", verificationLink);
+        // Request locale (Accept-Language) picks a translated variant such as verification_de.html when one exists
+        Locale locale = LocaleContextHolder.getLocale();
+        String htmlBody = emailTemplateService.render("verification.html", locale, variables);
+        String textBody = emailTemplateService.render("verification.txt", locale, variables);
 
-            // Create Mailjet client
-            MailjetClient client = new MailjetClient(
-                ClientOptions.builder()
-                    .apiKey(apiKey)
-                    .apiSecretKey(apiSecret)
-                    .build()
-            );
-
-            // Build email request
-            MailjetRequest request = new MailjetRequest(Emailv31.resource)
-                .property(Emailv31.MESSAGES, new JSONArray()
-                    .put(new JSONObject()
-                        .put(Emailv31.Message.FROM, new JSONObject()
-                            .put("Email", fromEmail)
-                            .put("Name", fromName))
-                        .put(Emailv31.Message.TO, new JSONArray()
-                            .put(new JSONObject()
-                                .put("Email", toEmail)
-                                .put("Name", firstName)))
-                        .put(Emailv31.Message.SUBJECT, subject)
-                        .put(Emailv31.Message.TEXTPART, textBody)
-                        .put(Emailv31.Message.HTMLPART, htmlBody)));
-
-            // Send email
-            MailjetResponse response = client.post(request);
+        // One verification email per address in flight; retries and double submits while it waits queue nothing new,
+        // the link of the queued email stays valid. Once it was sent or has failed, a new request queues a new email
+        String dedupKey = "verification:" + toEmail.toLowerCase(Locale.ROOT);
+        queueEmail(EmailCategory.VERIFICATION, dedupKey, toEmail, firstName, subject, textBody, htmlBody);
+    }
 
-            if (response.getStatus() == 200) {
-                logger.info("Verification email sent successfully to: {}", toEmail);
-            } else {
-                logger.error("Failed to send verification email. Status: {}, Data: {}",
-                           response.getStatus(), response.getData());
-                throw new RuntimeException("Failed to send verification email");
+    @Override
+    public boolean queueEmail(EmailCategory category, String dedupKey, String toEmail, String toName, String subject, String textPart, String htmlPart) {
+        Instant now = Instant.now();
+        EmailOutboxMessage message = EmailOutboxMessage.builder()
+                .dedupKey(dedupKey)
+                .category(category.name())
+                .toEmail(toEmail)
+                .toName(toName)
+                .subject(subject)
+                .textPart(textPart)
+                .htmlPart(htmlPart)
+                .nextAttemptAt(now)
+                .createdAt(now)
+                .build();
+        try {
+            emailOutboxRepository.insert(message);
+            return true;
+        } catch (DuplicateKeyException e) {
+            // Only an email still waiting to go out makes this one redundant; a finished one is reused for the new email
+            Query finished = Query.query(Criteria.where("dedupKey").is(dedupKey)
+                    .and("status").in(EmailOutboxMessage.SENT, EmailOutboxMessage.FAILED));
+            Update requeue = new Update()
+                    .set("category", message.getCategory())
+                    .set("toEmail", toEmail)
+                    .set("toName", toName)
+                    .set("subject", subject)
+                    .set("textPart", textPart)
+                    .set("htmlPart", htmlPart)
+                    .set("status", EmailOutboxMessage.PENDING)
+                    .set("attempts", 0)
+                    .set("nextAttemptAt", now)
+                    .set("createdAt", now)
+                    .unset("lockedUntil")
+                    .unset("claimToken")
+                    .unset("messageId")
+                    .unset("lastError")
+                    .unset("sentAt");
+            if (mongoTemplate.updateFirst(finished, requeue, EmailOutboxMessage.class).getModifiedCount() > 0) {
+                return true;
             }
-
-        } catch (MailjetException e) {
-            logger.error("Mailjet API error while sending verification email: {}", e.getMessage(), e);
-            throw new RuntimeException("Failed to send verification email", e);
-        } catch (Exception e) {
-            logger.error("Unexpected error while sending verification email: {}", e.getMessage(), e);
-            throw new RuntimeException("Failed to send verification email", e);
+            logger.info("Email with dedup key {} already queued, skipping", dedupKey);
+            return false;
         }
     }
-
-    private String buildVerificationEmailHtml(String firstName, String verificationLink) {
-        return String.format("""
-            <!DOCTYPE html>
-            <html>
-            <head>
-                <meta charset="UTF-8">
-                <style>
-                    .email-container { font-family: Arial, sans-serif; max-width: 600px; margin: 0 auto; }
-                    .header { background-color: #0d6efd; color: white; padding: 20px; text-align: center; }
-                    .content { padding: 30px; background-color: #f8f9fa; }
-                    .button { background-color: #198754; color: white; padding: 12px 24px; text-decoration: none; border-radius: 5px; display: inline-block; margin: 20px 0; }
-                    .footer { padding: 20px; text-align: center; color: #6c757d; font-size: 12px; }
-                </style>
-            </head>
-            <body>
-                <div class="email-container">
-                    <div class="header">
-                        <h1>🛡️ Keycloak Demo</h1>
-                        <p>Email Verification Required</p>
-                    </div>
-                    <div class="content">
-                        <h2>Hello %s!</h2>
-                        <p>Thank you for registering with Keycloak Demo. To complete your registration, please verify your email address by clicking the button below:</p>
-                        
-                        <center>
-                            <a href="%s" class="button">Verify Email Address</a>
-                        </center>
-                        
-                        <p>If the button doesn't work, you can copy and paste this link into your browser:</p>
-                        <p style="word-break: break-all; color: #0d6efd;">%s</p>
-                        
-                        <p><strong>Important:</strong> This verification link will expire in 24 hours.</p>
-                        
-                        <p>If you didn't create an account with us, please ignore this email.</p>
-                        
-                        <p>Best regards,<br>The Keycloak Demo Team</p>
-                    </div>
-                    <div class="footer">
-                        <p>This is an automated message. Please do not reply to this email.</p>
-                    </div>
-                </div>
-            </body>
-            </html>
-            """, firstName, verificationLink, verificationLink);
-    }
-
-    private String buildVerificationEmailText(String firstName, String verificationLink) {
-        return String.format("""
-            Hello %s!
-            
-            Thank you for registering with Keycloak Demo. To complete your registration, please verify your email address by clicking the link below:
-            
-            %s
-            
-            Important: This verification link will expire in 24 hours.
-            
-            If you didn't create an account with us, please ignore this email.
-            
-            Best regards,
-            The Keycloak Demo Team
-            
-            ---
-            This is an automated message. Please do not reply to this email.
-            """, firstName, verificationLink);
-    }
 }
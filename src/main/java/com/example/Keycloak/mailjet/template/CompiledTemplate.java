@@ -0,0 +1,116 @@
+package com.example.Keycloak.mailjet.template;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Email template parsed once into literal and placeholder segments
+ * Syntax: {{name}} inserts a variable, {{name|nl2br}} also turns line breaks into <br>
+ * In HTML templates every variable is HTML-escaped; text templates insert values as they are
+ */
+public class CompiledTemplate {
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+
+    private final List<Segment> segments;
+    private final int literalLength;
+
+    private CompiledTemplate(List<Segment> segments, int literalLength) {
+        this.segments = segments;
+        this.literalLength = literalLength;
+    }
+
+    public static CompiledTemplate compile(String source, boolean html) {
+        List<Segment> segments = new ArrayList<>();
+        int literalLength = 0;
+        int position = 0;
+        while (position < source.length()) {
+            int open = source.indexOf(OPEN, position);
+            if (open < 0) {
+                break;
+            }
+            int close = source.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed placeholder at offset " + open);
+            }
+            if (open > position) {
+                segments.add(new Literal(source.substring(position, open)));
+                literalLength += open - position;
+            }
+            segments.add(Placeholder.parse(source.substring(open + OPEN.length(), close).trim(), html));
+            position = close + CLOSE.length();
+        }
+        if (position < source.length()) {
+            segments.add(new Literal(source.substring(position)));
+            literalLength += source.length() - position;
+        }
+        return new CompiledTemplate(List.copyOf(segments), literalLength);
+    }
+
+    /**
+     * Appends the rendered template; missing variables render as empty text
+     */
+    public void renderTo(Map<String, String> variables, StringBuilder out) {
+        out.ensureCapacity(out.length() + literalLength + 64);
+        for (Segment segment : segments) {
+            segment.renderTo(variables, out);
+        }
+    }
+
+    private interface Segment {
+        void renderTo(Map<String, String> variables, StringBuilder out);
+    }
+
+    private record Literal(String text) implements Segment {
+        @Override
+        public void renderTo(Map<String, String> variables, StringBuilder out) {
+            out.append(text);
+        }
+    }
+
+    private record Placeholder(String name, boolean escapeHtml, boolean nl2br) implements Segment {
+
+        static Placeholder parse(String expression, boolean html) {
+            int pipe = expression.indexOf('|');
+            if (pipe < 0) {
+                return new Placeholder(expression, html, false);
+            }
+            String filter = expression.substring(pipe + 1).trim();
+            if (!"nl2br".equals(filter)) {
+                throw new IllegalArgumentException("Unknown template filter: " + filter);
+            }
+            return new Placeholder(expression.substring(0, pipe).trim(), html, true);
+        }
+
+        @Override
+        public void renderTo(Map<String, String> variables, StringBuilder out) {
+            String value = variables.get(name);
+            if (value == null) {
+                return;
+            }
+            if (!escapeHtml && !nl2br) {
+                out.append(value);
+                return;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '<' -> out.append(escapeHtml ? "&lt;" : "<");
+                    case '>' -> out.append(escapeHtml ? "&gt;" : ">");
+                    case '&' -> out.append(escapeHtml ? "&amp;" : "&");
+                    case '"' -> out.append(escapeHtml ? "&quot;" : "\"");
+                    case '\'' -> out.append(escapeHtml ? "&#39;" : "'");
+                    case '\r' -> {
+                        if (!nl2br) {
+                            out.append(c);
+                        }
+                    }
+                    case '\n' -> out.append(nl2br ? "<br>" : "\n");
+                    default -> out.append(c);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.Keycloak.model.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+import java.time.LocalDateTime;
+
+/**
+ * Organization fields rendered by dashboard/index, nothing more
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DashboardOrganizationDTO {
+
+    private String name;
+    private String description;
+    private String industry;
+    private String website;
+    private String address;
+    private String city;
+    private String state;
+    private String country;
+    private String zipCode;
+    private String phone;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,25 @@
+package com.example.Keycloak.model.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read model for the dashboard: account status joined with its organization in one query
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DashboardViewDTO {
+
+    private Boolean orgSetupCompleted;
+
+    // Account creation time
+    private LocalDateTime createdAt;
+
+    private DashboardOrganizationDTO organization;
+}
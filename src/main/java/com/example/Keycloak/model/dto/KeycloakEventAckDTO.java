@@ -0,0 +1,37 @@
+package com.example.Keycloak.model.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class KeycloakEventAckDTO {
+
+    public static final String ACCEPTED = "ACCEPTED";
+    // Transient failure, the sender should retry this event
+    public static final String FAILED = "FAILED";
+    // Malformed event, retrying will not help
+    public static final String REJECTED = "REJECTED";
+
+    private String eventId;
+
+    private String status;
+
+    private String message;
+
+    public static KeycloakEventAckDTO accepted(String eventId) {
+        return new KeycloakEventAckDTO(eventId, ACCEPTED, null);
+    }
+
+    public static KeycloakEventAckDTO failed(String eventId, String message) {
+        return new KeycloakEventAckDTO(eventId, FAILED, message);
+    }
+
+    public static KeycloakEventAckDTO rejected(String eventId, String message) {
+        return new KeycloakEventAckDTO(eventId, REJECTED, message);
+    }
+}
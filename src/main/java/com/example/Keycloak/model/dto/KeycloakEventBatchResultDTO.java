@@ -0,0 +1,34 @@
+package com.example.Keycloak.model.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class KeycloakEventBatchResultDTO {
+
+    private int accepted;
+
+    private int failed;
+
+    private int rejected;
+
+    @Builder.Default
+    private List<KeycloakEventAckDTO> results = new ArrayList<>();
+
+    public void add(KeycloakEventAckDTO ack) {
+        results.add(ack);
+        switch (ack.getStatus()) {
+            case KeycloakEventAckDTO.ACCEPTED -> accepted++;
+            case KeycloakEventAckDTO.FAILED -> failed++;
+            default -> rejected++;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.Keycloak.model.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class KeycloakEventDTO {
+
+    private String eventId;
+
+    private String eventType;
+
+    private String userId;
+
+    private String username;
+
+    private String email;
+
+    private String clientId;
+
+    private String ipAddress;
+
+    private String realmId;
+
+    private Long timestamp;
+
+    private String source;
+}
@@ -0,0 +1,34 @@
+package com.example.Keycloak.model.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+/**
+ * Outcome of one row of a bulk user provisioning upload
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserProvisioningResultDTO {
+
+    public static final String CREATED = "CREATED";
+    public static final String EXISTS = "EXISTS";
+    public static final String INVALID = "INVALID";
+    public static final String FAILED = "FAILED";
+
+    // 1-based line number in the upload
+    private long row;
+
+    private String username;
+
+    private String email;
+
+    private String status;
+
+    private String userId;
+
+    private String error;
+}
@@ -0,0 +1,33 @@
+package com.example.Keycloak.model.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+/**
+ * Totals written as the last line of a bulk user provisioning response
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserProvisioningSummaryDTO {
+
+    // "create" or "partial-import"
+    private String mode;
+
+    private long rows;
+
+    private long created;
+
+    private long existing;
+
+    private long invalid;
+
+    private long failed;
+
+    private long durationMillis;
+
+    private double rowsPerSecond;
+}
@@ -0,0 +1,54 @@
+package com.example.Keycloak.model.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Bulk email job; its recipients are email_outbox messages carrying the job id
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "email_bulk_jobs")
+public class EmailBulkJob {
+
+    // Recipients are still being read and queued
+    public static final String QUEUEING = "QUEUEING";
+    // Every recipient is in the outbox, the outbox dispatcher does the sending
+    public static final String QUEUED = "QUEUED";
+    public static final String FAILED = "FAILED";
+
+    @Id
+    private String id;
+
+    // "upload" or "organization:<id>"
+    private String source;
+
+    // Set for organization jobs; members of the organization may follow the job
+    private String organizationId;
+
+    // Keycloak user id of the caller who started the job
+    private String createdBy;
+
+    private String subject;
+
+    private String status;
+
+    @Builder.Default
+    private Long recipients = 0L;
+
+    // Duplicate or malformed recipient entries
+    @Builder.Default
+    private Long skipped = 0L;
+
+    private String error;
+    private Instant createdAt;
+    private Instant queuedAt;
+}
@@ -0,0 +1,68 @@
+package com.example.Keycloak.model.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Email waiting to be sent through Mailjet by the outbox dispatcher
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "email_outbox")
+@CompoundIndex(name = "status_category_next_attempt", def = "{'status': 1, 'category': 1, 'nextAttemptAt': 1}")
+public class EmailOutboxMessage {
+
+    public static final String PENDING = "PENDING";
+    // Claimed by a dispatcher until lockedUntil
+    public static final String SENDING = "SENDING";
+    public static final String SENT = "SENT";
+    // Gave up after the last attempt or refused by Mailjet
+    public static final String FAILED = "FAILED";
+
+    @Id
+    private String id;
+
+    // Same key means same email, a second enqueue is ignored while the first is pending
+    @Indexed(unique = true)
+    private String dedupKey;
+
+    private String toEmail;
+    private String toName;
+    private String subject;
+    private String textPart;
+    private String htmlPart;
+
+    // EmailCategory name, decides which rate limit queue the message waits in
+    private String category;
+
+    // Set for emails queued by a bulk email job
+    @Indexed(sparse = true)
+    private String jobId;
+
+    @Builder.Default
+    private String status = PENDING;
+
+    @Builder.Default
+    private Integer attempts = 0;
+
+    private Instant nextAttemptAt;
+    private Instant lockedUntil;
+    // Set by the claim that won the message, lets the dispatcher load exactly its batch
+    private String claimToken;
+    private String messageId;
+    private String lastError;
+    private Instant createdAt;
+    // Sent messages are removed after a week, a bulk job's sent count only covers what is still retained
+    @Indexed(name = "sent_at_ttl", expireAfter = "7d")
+    private Instant sentAt;
+}
@@ -7,6 +7,7 @@ import lombok.Builder;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -18,9 +19,13 @@ import java.time.LocalDateTime;
 @Document(collection = "organizations")
 public class Organization {
 
+    // Case-insensitive comparison; queries on name must use the same collation to hit the index
+    public static final String NAME_COLLATION = "{ 'locale': 'en', 'strength': 2 }";
+
     @Id
     private String id;
 
+    @Indexed(unique = true, collation = NAME_COLLATION)
     private String name;
     private String description;
     private String industry;
@@ -32,6 +37,10 @@ public class Organization {
     private String zipCode;
     private String phone;
 
+    // Keycloak user who set the organization up; one organization per user, which makes setup retries resumable
+    @Indexed(unique = true, sparse = true)
+    private String ownerKeycloakUserId;
+
     @CreatedDate
     private LocalDateTime createdAt;
 
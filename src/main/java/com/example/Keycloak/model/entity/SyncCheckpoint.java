@@ -0,0 +1,49 @@
+package com.example.Keycloak.model.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Progress of a resumable background sync; one document per job
+ * The lease makes sure only one application instance runs the job at a time
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "sync_checkpoints")
+public class SyncCheckpoint {
+
+    @Id
+    private String id;
+
+    private String leaseOwner;
+
+    private Instant leaseUntil;
+
+    // Offset of the next page; 0 when no run is in progress
+    private int nextFirst;
+
+    private Instant runStartedAt;
+
+    private Instant lastPageAt;
+
+    private Instant completedAt;
+
+    // Totals of the current or last run
+    private long created;
+
+    private long updated;
+
+    private long unchanged;
+
+    private long skipped;
+
+    private long failed;
+}
@@ -0,0 +1,9 @@
+package com.example.Keycloak.repository;
+
+import com.example.Keycloak.model.entity.EmailBulkJob;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface EmailBulkJobRepository extends MongoRepository<EmailBulkJob, String> {
+}
@@ -0,0 +1,15 @@
+package com.example.Keycloak.repository;
+
+import com.example.Keycloak.model.entity.EmailOutboxMessage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface EmailOutboxRepository extends MongoRepository<EmailOutboxMessage, String> {
+
+    long countByStatus(String status);
+
+    Slice<EmailOutboxMessage> findByJobId(String jobId, Pageable pageable);
+}
@@ -2,10 +2,16 @@ package com.example.Keycloak.repository;
 
 import com.example.Keycloak.model.entity.Organization;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Optional;
+
 @Repository
 public interface OrganizationRepository extends MongoRepository<Organization, String> {
 
+    @Query(value = "{ 'name': ?0 }", exists = true, collation = Organization.NAME_COLLATION)
     boolean existsByName(String name);
+
+    Optional<Organization> findByOwnerKeycloakUserId(String ownerKeycloakUserId);
 }
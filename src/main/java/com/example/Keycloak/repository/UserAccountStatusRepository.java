@@ -1,9 +1,13 @@
 package com.example.Keycloak.repository;
 
 import com.example.Keycloak.model.entity.UserAccountStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -16,4 +20,8 @@ public interface UserAccountStatusRepository extends MongoRepository<UserAccount
     boolean existsByKeycloakUserId(String keycloakUserId);
 
     boolean existsByEmail(String email);
+
+    Slice<UserAccountStatus> findByOrganizationId(String organizationId, Pageable pageable);
+
+    List<UserAccountStatus> findByKeycloakUserIdIn(Collection<String> keycloakUserIds);
 }
@@ -0,0 +1,11 @@
+package com.example.Keycloak.service;
+
+import com.example.Keycloak.model.dto.DashboardViewDTO;
+
+public interface DashboardQueryService {
+
+    /**
+     * @return null when the user has no account status yet
+     */
+    DashboardViewDTO getDashboardView(String keycloakUserId);
+}
@@ -0,0 +1,15 @@
+package com.example.Keycloak.service;
+
+import com.example.Keycloak.model.dto.KeycloakEventAckDTO;
+import com.example.Keycloak.model.dto.KeycloakEventDTO;
+
+public interface KeycloakEventIngestionService {
+
+    /**
+     * Hands the event to the processing pipeline without waiting for it to be processed
+     * ACCEPTED means queued, FAILED means the pipeline is full and the sender should retry later
+     */
+    KeycloakEventAckDTO submit(KeycloakEventDTO event);
+
+    int getQueueDepth();
+}
@@ -0,0 +1,9 @@
+package com.example.Keycloak.service;
+
+import com.example.Keycloak.model.dto.KeycloakEventAckDTO;
+import com.example.Keycloak.model.dto.KeycloakEventDTO;
+
+public interface KeycloakEventService {
+
+    KeycloakEventAckDTO processEvent(KeycloakEventDTO event);
+}
@@ -9,6 +9,11 @@ public interface KeycloakService {
 
     void sendVerificationEmail(String userId);
 
+    /**
+     * Queues the verification email when the user's email and first name are already known
+     */
+    void sendVerificationEmail(String userId, String email, String firstName);
+
     boolean verifyEmail(String token);
 
     UserRepresentation getUserById(String userId);
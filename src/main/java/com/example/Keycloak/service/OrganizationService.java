@@ -5,10 +5,16 @@ import com.example.Keycloak.model.dto.OrganizationSetupDTO;
 
 public interface OrganizationService {
 
-    Organization createOrganization(OrganizationSetupDTO organizationSetupDTO);
+    /**
+     * @throws com.example.Keycloak.exception.OrganizationAlreadyExistsException if the name is taken, ignoring case,
+     * or the owner already has an organization
+     */
+    Organization createOrganization(OrganizationSetupDTO organizationSetupDTO, String ownerKeycloakUserId);
 
     Organization findById(String id);
 
+    Organization findByOwner(String ownerKeycloakUserId);
+
     Organization updateOrganization(String id, OrganizationSetupDTO organizationSetupDTO);
 
     void deleteOrganization(String id);
@@ -0,0 +1,15 @@
+package com.example.Keycloak.service;
+
+import com.example.Keycloak.model.dto.OrganizationSetupDTO;
+import com.example.Keycloak.model.entity.Organization;
+
+public interface OrganizationSetupService {
+
+    /**
+     * Creates the user's organization and marks their organization setup as completed
+     * Safe to retry after a partial failure: an organization the user already owns is reused
+     *
+     * @throws com.example.Keycloak.exception.OrganizationAlreadyExistsException if another organization has the name
+     */
+    Organization completeSetup(String keycloakUserId, OrganizationSetupDTO organizationSetupDTO);
+}
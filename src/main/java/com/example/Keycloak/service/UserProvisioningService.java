@@ -0,0 +1,39 @@
+package com.example.Keycloak.service;
+
+import com.example.Keycloak.model.dto.UserProvisioningResultDTO;
+import com.example.Keycloak.model.dto.UserProvisioningSummaryDTO;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+public interface UserProvisioningService {
+
+    /**
+     * Spools an upload of UserRegistrationDTO rows and reserves a provisioning slot
+     * NDJSON lines look like {"firstName":"Ann","lastName":"Lee","email":"a@b.c","username":"ann","password":"..."},
+     * CSV records like Ann,Lee,a@b.c,ann,password (header optional, RFC 4180 quoting)
+     *
+     * @param partialImport create users in batches through Keycloak's partial import instead of one call per user
+     * @throws java.util.concurrent.RejectedExecutionException if too many provisioning runs are in progress
+     * @throws com.example.Keycloak.exception.UploadTooLargeException if the upload exceeds app.provisioning.max-upload-size
+     */
+    Provisioning prepare(InputStream rows, boolean csv, boolean partialImport) throws IOException;
+
+    /**
+     * A prepared upload; run it at most once, and discard it if it will not run
+     */
+    interface Provisioning {
+
+        /**
+         * Creates the users, handing each row's result to the consumer on the calling thread as soon as it is known
+         * Discards the upload when done
+         */
+        UserProvisioningSummaryDTO run(Consumer<UserProvisioningResultDTO> results) throws IOException;
+
+        /**
+         * Frees the run slot and deletes the spooled upload; safe to call more than once
+         */
+        void discard();
+    }
+}
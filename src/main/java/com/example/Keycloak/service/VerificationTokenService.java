@@ -0,0 +1,21 @@
+package com.example.Keycloak.service;
+
+import java.util.function.Predicate;
+
+public interface VerificationTokenService {
+
+    /**
+     * Signed, URL-safe email verification token for the user
+     */
+    String issue(String userId);
+
+    /**
+     * Checks signature and expiry, then applies the token at most once at a time
+     * The first use runs the action with the token's user id; a replay while it runs waits for its outcome,
+     * a replay after it succeeded gets true without running the action again
+     * A failed use is forgotten, so the link can be tried again
+     *
+     * @return false if the token is forged, malformed, signed with an unknown key or expired, or the action failed
+     */
+    boolean consume(String token, Predicate<String> action);
+}
@@ -0,0 +1,67 @@
+package com.example.Keycloak.service.impl;
+
+import com.example.Keycloak.model.dto.DashboardViewDTO;
+import com.example.Keycloak.service.DashboardQueryService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Builds the dashboard read model in a single aggregation:
+ * $match the account status, $lookup its organization and project only the rendered fields
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DashboardQueryServiceImpl implements DashboardQueryService {
+
+    private final MongoTemplate mongoTemplate;
+
+    // Only what dashboard/index renders, projected inside the lookup so the full organization never leaves Mongo
+    private static final Document ORGANIZATION_FIELDS = new Document("_id", 0)
+            .append("name", 1)
+            .append("description", 1)
+            .append("industry", 1)
+            .append("website", 1)
+            .append("address", 1)
+            .append("city", 1)
+            .append("state", 1)
+            .append("country", 1)
+            .append("zipCode", 1)
+            .append("phone", 1)
+            .append("createdAt", 1);
+
+    @Override
+    public DashboardViewDTO getDashboardView(String keycloakUserId) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("keycloakUserId").is(keycloakUserId)),
+                Aggregation.limit(1),
+                stage("$lookup", new Document("from", "organizations")
+                        // organizationId is stored as a string, organization ids are ObjectIds
+                        .append("let", new Document("organizationId", new Document("$convert", new Document("input", "$organizationId")
+                                .append("to", "objectId")
+                                .append("onError", null)
+                                .append("onNull", null))))
+                        .append("pipeline", List.of(
+                                new Document("$match", new Document("$expr", new Document("$eq", List.of("$_id", "$$organizationId")))),
+                                new Document("$project", ORGANIZATION_FIELDS)))
+                        .append("as", "organization")),
+                stage("$project", new Document("_id", 0)
+                        .append("orgSetupCompleted", 1)
+                        .append("createdAt", 1)
+                        .append("organization", new Document("$first", "$organization"))));
+
+        return mongoTemplate.aggregate(aggregation, "user_account_status", DashboardViewDTO.class).getUniqueMappedResult();
+    }
+
+    private static AggregationOperation stage(String operator, Document body) {
+        return context -> new Document(operator, body);
+    }
+}
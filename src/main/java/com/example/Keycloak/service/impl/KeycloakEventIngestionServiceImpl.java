@@ -0,0 +1,183 @@
+package com.example.Keycloak.service.impl;
+
+import com.example.Keycloak.model.dto.KeycloakEventAckDTO;
+import com.example.Keycloak.model.dto.KeycloakEventDTO;
+import com.example.Keycloak.service.KeycloakEventIngestionService;
+import com.example.Keycloak.service.KeycloakEventService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded in-process pipeline between the event endpoints and KeycloakEventService
+ * Request threads only enqueue; a small pool of processor threads does the actual work
+ * An optional processing delay parks events in a DelayQueue the processors drain, so a delayed event holds no thread
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class KeycloakEventIngestionServiceImpl implements KeycloakEventIngestionService {
+
+    private final KeycloakEventService keycloakEventService;
+    private final Environment environment;
+
+    @Value("${app.events.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${app.events.processor-threads:2}")
+    private int processorThreads;
+
+    @Value("${app.events.processing-delay-ms:0}")
+    private long processingDelayMillis;
+
+    @Value("${app.events.shutdown-timeout-ms:5000}")
+    private long shutdownTimeoutMillis;
+
+    private final BlockingQueue<KeycloakEventDTO> queue = new LinkedBlockingQueue<>();
+    private final DelayQueue<DelayedEvent> delayed = new DelayQueue<>();
+    private CountDownLatch processorsStopped;
+    // Bounds queued plus delayed events; a permit is released once the event has been processed
+    private Semaphore capacity;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        capacity = new Semaphore(queueCapacity);
+        // Processors follow spring.threads.virtual.enabled like the Tomcat request threads do
+        boolean virtual = Threading.VIRTUAL.isActive(environment);
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("keycloak-event-processor-");
+        executor.setDaemon(true);
+        executor.setVirtualThreads(virtual);
+
+        running = true;
+        processorsStopped = new CountDownLatch(processorThreads);
+        for (int i = 0; i < processorThreads; i++) {
+            executor.execute(() -> {
+                try {
+                    processLoop();
+                } finally {
+                    processorsStopped.countDown();
+                }
+            });
+        }
+        log.info("Keycloak event ingestion started - Capacity: {}, Processors: {} ({} threads), Delay: {}ms",
+                queueCapacity, processorThreads, virtual ? "virtual" : "platform", processingDelayMillis);
+    }
+
+    @Override
+    public KeycloakEventAckDTO submit(KeycloakEventDTO event) {
+        // Cheap checks stay synchronous so the sender learns about malformed events right away
+        if (event.getEventId() == null || event.getEventId().isBlank()) {
+            return KeycloakEventAckDTO.rejected(event.getEventId(), "eventId is required");
+        }
+        if (event.getEventType() == null) {
+            return KeycloakEventAckDTO.rejected(event.getEventId(), "eventType is required");
+        }
+        if (!running) {
+            return KeycloakEventAckDTO.failed(event.getEventId(), "Event ingestion is shutting down");
+        }
+        if (!capacity.tryAcquire()) {
+            log.warn("⚠️ Keycloak event queue full, asking sender to retry event {}", event.getEventId());
+            return KeycloakEventAckDTO.failed(event.getEventId(), "Event queue is full");
+        }
+
+        if (processingDelayMillis > 0) {
+            delayed.add(new DelayedEvent(event, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(processingDelayMillis)));
+        } else {
+            queue.add(event);
+        }
+        return KeycloakEventAckDTO.accepted(event.getEventId());
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueCapacity - capacity.availablePermits();
+    }
+
+    private void processLoop() {
+        while (running || !queue.isEmpty() || !delayed.isEmpty()) {
+            releaseDelayed();
+            KeycloakEventDTO event;
+            try {
+                event = queue.poll(pollTimeoutMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (event == null) {
+                continue;
+            }
+            try {
+                KeycloakEventAckDTO ack = keycloakEventService.processEvent(event);
+                if (!KeycloakEventAckDTO.ACCEPTED.equals(ack.getStatus())) {
+                    log.warn("Keycloak event {} not processed - Status: {}, Message: {}",
+                            event.getEventId(), ack.getStatus(), ack.getMessage());
+                }
+            } catch (Exception e) {
+                log.error("Failed to process Keycloak event {}: ", event.getEventId(), e);
+            } finally {
+                capacity.release();
+            }
+        }
+    }
+
+    private void releaseDelayed() {
+        if (running) {
+            for (DelayedEvent ready = delayed.poll(); ready != null; ready = delayed.poll()) {
+                queue.add(ready.event());
+            }
+            return;
+        }
+        // On shutdown delayed events are processed right away instead of being dropped with their permits
+        for (DelayedEvent pending : delayed) {
+            if (delayed.remove(pending)) {
+                queue.add(pending.event());
+            }
+        }
+    }
+
+    private long pollTimeoutMillis() {
+        DelayedEvent next = delayed.peek();
+        if (next == null) {
+            return 100;
+        }
+        return Math.max(1, Math.min(100, next.getDelay(TimeUnit.MILLISECONDS)));
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        processorsStopped.await(shutdownTimeoutMillis, TimeUnit.MILLISECONDS);
+        int pending = queue.size() + delayed.size();
+        if (pending > 0) {
+            log.warn("⚠️ {} Keycloak events were not processed before shutdown", pending);
+        }
+    }
+
+    private record DelayedEvent(KeycloakEventDTO event, long readyAtNanos) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(readyAtNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(readyAtNanos, ((DelayedEvent) other).readyAtNanos);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.Keycloak.service.impl;
+
+import com.example.Keycloak.model.dto.KeycloakEventAckDTO;
+import com.example.Keycloak.model.dto.KeycloakEventDTO;
+import com.example.Keycloak.service.KeycloakEventService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+@Service
+@Slf4j
+public class KeycloakEventServiceImpl implements KeycloakEventService {
+
+    @Override
+    public KeycloakEventAckDTO processEvent(KeycloakEventDTO event) {
+        if (event.getEventId() == null || event.getEventId().isBlank()) {
+            return KeycloakEventAckDTO.rejected(event.getEventId(), "eventId is required");
+        }
+        if (event.getEventType() == null) {
+            return KeycloakEventAckDTO.rejected(event.getEventId(), "eventType is required");
+        }
+
+        try {
+            switch (event.getEventType()) {
+                case "LOGIN" -> {
+                    log.info("🔐 KEYCLOAK LOGIN EVENT RECEIVED: {}", event);
+                    log.info("✅ User has successfully logged in via Keycloak");
+                }
+                case "REGISTRATION" -> {
+                    log.info("📝 KEYCLOAK REGISTRATION EVENT RECEIVED: {}", event);
+                    log.info("🎉 New user has registered via Keycloak");
+                }
+                default -> {
+                    return KeycloakEventAckDTO.rejected(event.getEventId(), "Unsupported eventType: " + event.getEventType());
+                }
+            }
+            return KeycloakEventAckDTO.accepted(event.getEventId());
+        } catch (Exception e) {
+            log.error("Failed to process Keycloak event {}: ", event.getEventId(), e);
+            return KeycloakEventAckDTO.failed(event.getEventId(), e.getMessage());
+        }
+    }
+}
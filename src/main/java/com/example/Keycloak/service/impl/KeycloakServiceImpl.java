@@ -1,12 +1,15 @@
 package com.example.Keycloak.service.impl;
 
+import com.example.Keycloak.config.KeycloakAdminResources;
+import com.example.Keycloak.exception.UserAlreadyExistsException;
 import com.example.Keycloak.model.dto.UserRegistrationDTO;
 import com.example.Keycloak.service.KeycloakService;
+import com.example.Keycloak.service.VerificationTokenService;
 import com.example.Keycloak.mailjet.service.MailjetService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.keycloak.admin.client.Keycloak;
-import org.keycloak.admin.client.resource.RealmResource;
 import org.keycloak.admin.client.resource.UsersResource;
 import org.keycloak.representations.idm.CredentialRepresentation;
 import org.keycloak.representations.idm.UserRepresentation;
@@ -14,7 +17,6 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import jakarta.ws.rs.core.Response;
-import java.util.Arrays;
 import java.util.List;
 
 @Service
@@ -22,8 +24,10 @@ import java.util.List;
 @Slf4j
 public class KeycloakServiceImpl implements KeycloakService {
 
-    private final Keycloak keycloakAdminClient;
+    private final KeycloakAdminResources keycloakAdminResources;
     private final MailjetService mailjetService;
+    private final VerificationTokenService verificationTokenService;
+    private final MeterRegistry meterRegistry;
 
     @Value("${keycloak.realm}")
     private String realm;
@@ -33,36 +37,35 @@ public class KeycloakServiceImpl implements KeycloakService {
 
     @Override
     public String createUser(UserRegistrationDTO userRegistrationDTO) {
+        Timer.Sample total = Timer.start(meterRegistry);
         try {
-            RealmResource realmResource = keycloakAdminClient.realm(realm);
-            UsersResource usersResource = realmResource.users();
-
-            UserRepresentation user = new UserRepresentation();
-            user.setUsername(userRegistrationDTO.getUsername());
-            user.setEmail(userRegistrationDTO.getEmail());
-            user.setFirstName(userRegistrationDTO.getFirstName());
-            user.setLastName(userRegistrationDTO.getLastName());
-            user.setEnabled(true);
-            user.setEmailVerified(false);
-
-            // Create user
-            Response response = usersResource.create(user);
-            String userId = extractUserIdFromResponse(response);
-
-            // Set password
-            CredentialRepresentation credential = new CredentialRepresentation();
-            credential.setType(CredentialRepresentation.PASSWORD);
-            credential.setValue(userRegistrationDTO.getPassword());
-            credential.setTemporary(false);
-
-            usersResource.get(userId).resetPassword(credential);
+            UsersResource usersResource = keycloakAdminResources.users(realm);
+
+            UserRepresentation user = newUserRepresentation(userRegistrationDTO);
+
+            // Create user; Keycloak answers 409 when the username or email is taken, so no pre-search is needed
+            String userId = registrationPhase("create").record(() -> {
+                try (Response response = keycloakAdminResources.timed("createUser", () -> usersResource.create(user))) {
+                    if (response.getStatus() == Response.Status.CONFLICT.getStatusCode()) {
+                        throw new UserAlreadyExistsException(userRegistrationDTO.getUsername());
+                    }
+                    if (response.getStatus() != Response.Status.CREATED.getStatusCode()) {
+                        throw new IllegalStateException("Keycloak returned status " + response.getStatus());
+                    }
+                    return extractUserIdFromResponse(response);
+                }
+            });
 
-            // Send verification email
-            sendVerificationEmail(userId);
+            // Send verification email with the details we already have
+            registrationPhase("verificationEmail").record(() ->
+                    sendVerificationEmail(userId, userRegistrationDTO.getEmail(), userRegistrationDTO.getFirstName()));
 
+            total.stop(registrationPhase("total"));
             log.info("User created successfully with ID: {}", userId);
             return userId;
 
+        } catch (UserAlreadyExistsException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error creating user: ", e);
             throw new RuntimeException("Failed to create user in Keycloak", e);
@@ -72,43 +75,74 @@ public class KeycloakServiceImpl implements KeycloakService {
     @Override
     public void sendVerificationEmail(String userId) {
         try {
-            RealmResource realmResource = keycloakAdminClient.realm(realm);
-            UserRepresentation user = realmResource.users().get(userId).toRepresentation();
-
-            String verificationLink = emailVerificationUrl + "?token=" + generateVerificationToken(userId);
-
-            mailjetService.sendVerificationEmail(user.getEmail(), user.getFirstName(), verificationLink);
-
-            log.info("Verification email sent to user: {}", user.getEmail());
+            UserRepresentation user = keycloakAdminResources.timed("getUser",
+                    () -> keycloakAdminResources.users(realm).get(userId).toRepresentation());
+            sendVerificationEmail(userId, user.getEmail(), user.getFirstName());
         } catch (Exception e) {
             log.error("Error sending verification email: ", e);
             throw new RuntimeException("Failed to send verification email", e);
         }
     }
 
+    @Override
+    public void sendVerificationEmail(String userId, String email, String firstName) {
+        String verificationLink = emailVerificationUrl + "?token=" + verificationTokenService.issue(userId);
+
+        mailjetService.sendVerificationEmail(email, firstName, verificationLink);
+
+        log.info("Verification email queued for user: {}", email);
+    }
+
+    // Password goes in with the user, no separate resetPassword call
+    static UserRepresentation newUserRepresentation(UserRegistrationDTO userRegistrationDTO) {
+        CredentialRepresentation credential = new CredentialRepresentation();
+        credential.setType(CredentialRepresentation.PASSWORD);
+        credential.setValue(userRegistrationDTO.getPassword());
+        credential.setTemporary(false);
+
+        UserRepresentation user = new UserRepresentation();
+        user.setUsername(userRegistrationDTO.getUsername());
+        user.setEmail(userRegistrationDTO.getEmail());
+        user.setFirstName(userRegistrationDTO.getFirstName());
+        user.setLastName(userRegistrationDTO.getLastName());
+        user.setEnabled(true);
+        user.setEmailVerified(false);
+        user.setCredentials(List.of(credential));
+        return user;
+    }
+
+    // Registration latency by phase: keycloak.registration{phase=create|verificationEmail|total}
+    private Timer registrationPhase(String phase) {
+        return Timer.builder("keycloak.registration")
+                .description("User registration latency by phase")
+                .tag("phase", phase)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
     @Override
     public boolean verifyEmail(String token) {
-        try {
-            String userId = validateVerificationToken(token);
-            if (userId != null) {
-                RealmResource realmResource = keycloakAdminClient.realm(realm);
-                UserRepresentation user = realmResource.users().get(userId).toRepresentation();
-                user.setEmailVerified(true);
-                realmResource.users().get(userId).update(user);
+        // Signature, expiry and replay are checked in-process; forged, expired or replayed links never reach Keycloak
+        return verificationTokenService.consume(token, userId -> {
+            try {
+                // Partial update, Keycloak only applies the fields that are set
+                UserRepresentation patch = new UserRepresentation();
+                patch.setEmailVerified(true);
+                keycloakAdminResources.timed("verifyEmail",
+                        () -> keycloakAdminResources.users(realm).get(userId).update(patch));
                 return true;
+            } catch (Exception e) {
+                log.error("Error verifying email: ", e);
+                return false;
             }
-            return false;
-        } catch (Exception e) {
-            log.error("Error verifying email: ", e);
-            return false;
-        }
+        });
     }
 
     @Override
     public UserRepresentation getUserById(String userId) {
         try {
-            RealmResource realmResource = keycloakAdminClient.realm(realm);
-            return realmResource.users().get(userId).toRepresentation();
+            return keycloakAdminResources.timed("getUser",
+                    () -> keycloakAdminResources.users(realm).get(userId).toRepresentation());
         } catch (Exception e) {
             log.error("Error getting user by ID: ", e);
             return null;
@@ -118,8 +152,9 @@ public class KeycloakServiceImpl implements KeycloakService {
     @Override
     public UserRepresentation getUserByEmail(String email) {
         try {
-            RealmResource realmResource = keycloakAdminClient.realm(realm);
-            List<UserRepresentation> users = realmResource.users().search(email, true);
+            // Exact match on the email field only, the generic search also matches username and names
+            List<UserRepresentation> users = keycloakAdminResources.timed("searchUserByEmail",
+                    () -> keycloakAdminResources.users(realm).search(null, null, null, email, 0, 1, null, true, true));
             return users.isEmpty() ? null : users.get(0);
         } catch (Exception e) {
             log.error("Error getting user by email: ", e);
@@ -130,8 +165,7 @@ public class KeycloakServiceImpl implements KeycloakService {
     @Override
     public void deleteUser(String userId) {
         try {
-            RealmResource realmResource = keycloakAdminClient.realm(realm);
-            realmResource.users().get(userId).remove();
+            keycloakAdminResources.timed("deleteUser", () -> keycloakAdminResources.users(realm).get(userId).remove());
         } catch (Exception e) {
             log.error("Error deleting user: ", e);
             throw new RuntimeException("Failed to delete user from Keycloak", e);
@@ -142,27 +176,4 @@ public class KeycloakServiceImpl implements KeycloakService {
         String location = response.getLocation().getPath();
         return location.substring(location.lastIndexOf('/') + 1);
     }
-
-    private String generateVerificationToken(String userId) {
-        // Simple token generation - in production, use JWT or more secure method
-        return java.util.Base64.getEncoder().encodeToString((userId + ":" + System.currentTimeMillis()).getBytes());
-    }
-
-    private String validateVerificationToken(String token) {
-        try {
-            String decoded = new String(java.util.Base64.getDecoder().decode(token));
-            String[] parts = decoded.split(":");
-            if (parts.length == 2) {
-                String userId = parts[0];
-                long timestamp = Long.parseLong(parts[1]);
-                // Token valid for 24 hours
-                if (System.currentTimeMillis() - timestamp < 24 * 60 * 60 * 1000) {
-                    return userId;
-                }
-            }
-        } catch (Exception e) {
-            log.error("Error validating token: ", e);
-        }
-        return null;
-    }
 }
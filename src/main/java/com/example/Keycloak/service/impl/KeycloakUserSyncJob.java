@@ -0,0 +1,280 @@
+package com.example.Keycloak.service.impl;
+
+import com.example.Keycloak.cache.CacheInvalidationBus;
+import com.example.Keycloak.config.KeycloakAdminResources;
+import com.example.Keycloak.model.entity.SyncCheckpoint;
+import com.example.Keycloak.model.entity.UserAccountStatus;
+import com.example.Keycloak.repository.UserAccountStatusRepository;
+import com.mongodb.bulk.BulkWriteResult;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Reconciles user_account_status with Keycloak's user store, so users created in the admin console
+ * have a status document before their first login
+ * Pages through Keycloak users (brief representations), reads the matching status documents with one query
+ * per page and applies only the differences as one unordered bulk write
+ * Progress is checkpointed after every page in sync_checkpoints; an interrupted run resumes at the next page,
+ * and a lease keeps other instances from running it at the same time
+ * Runs on its own thread with a pause between pages that grows while Keycloak answers slowly,
+ * so it never competes with interactive traffic for long
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class KeycloakUserSyncJob {
+
+    static final String JOB_ID = "keycloak-user-sync";
+
+    private final KeycloakAdminResources keycloakAdminResources;
+    private final UserAccountStatusRepository userAccountStatusRepository;
+    private final MongoTemplate mongoTemplate;
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private ExecutorService executor;
+
+    @Value("${keycloak.realm}")
+    private String realm;
+
+    @Value("${app.sync.interval:24h}")
+    private Duration interval;
+
+    @Value("${app.sync.page-size:100}")
+    private int pageSize;
+
+    @Value("${app.sync.page-delay-ms:200}")
+    private long pageDelayMillis;
+
+    @Value("${app.sync.max-page-delay-ms:10000}")
+    private long maxPageDelayMillis;
+
+    @Value("${app.sync.slow-page-ms:1000}")
+    private long slowPageMillis;
+
+    @Value("${app.sync.lease-ms:300000}")
+    private long leaseMillis;
+
+    @PostConstruct
+    public void start() {
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "keycloak-user-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Starts a run when one is due or an interrupted run can be resumed
+     * The run itself goes to the job's own thread, the shared scheduler thread is never held up
+     */
+    @Scheduled(fixedDelayString = "${app.sync.check-interval-ms:60000}")
+    public void trigger() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                SyncCheckpoint checkpoint = claim();
+                if (checkpoint != null) {
+                    sync(checkpoint);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                // The checkpoint stays where it was, the next trigger resumes once the lease runs out
+                log.error("Keycloak user sync failed: ", e);
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    private SyncCheckpoint claim() {
+        Instant now = Instant.now();
+        Query query = Query.query(new Criteria().andOperator(
+                Criteria.where("_id").is(JOB_ID),
+                new Criteria().orOperator(
+                        Criteria.where("leaseUntil").is(null),
+                        Criteria.where("leaseUntil").lt(now)),
+                new Criteria().orOperator(
+                        // Interrupted run
+                        Criteria.where("nextFirst").gt(0),
+                        Criteria.where("completedAt").is(null),
+                        Criteria.where("completedAt").lt(now.minus(interval)))));
+        Update update = new Update()
+                .set("leaseOwner", instanceId)
+                .set("leaseUntil", now.plusMillis(leaseMillis));
+        try {
+            return mongoTemplate.findAndModify(query, update,
+                    FindAndModifyOptions.options().upsert(true).returnNew(true), SyncCheckpoint.class);
+        } catch (DuplicateKeyException e) {
+            // Checkpoint exists but is leased or not due; the upsert collided with it
+            return null;
+        }
+    }
+
+    private void sync(SyncCheckpoint checkpoint) throws InterruptedException {
+        int first = checkpoint.getNextFirst();
+        if (first == 0) {
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(JOB_ID)), new Update()
+                    .set("runStartedAt", Instant.now())
+                    .set("created", 0L)
+                    .set("updated", 0L)
+                    .set("unchanged", 0L)
+                    .set("skipped", 0L)
+                    .set("failed", 0L), SyncCheckpoint.class);
+            log.info("🔄 Keycloak user sync started");
+        } else {
+            log.info("🔄 Keycloak user sync resuming at offset {}", first);
+        }
+
+        long delay = pageDelayMillis;
+        while (true) {
+            int offset = first;
+            long startedAt = System.nanoTime();
+            // Keycloak orders users by username; users added during a run may shift a page, the next run catches them
+            List<UserRepresentation> page = keycloakAdminResources.timed("syncUsers",
+                    () -> keycloakAdminResources.users(realm).search(null, offset, pageSize, true));
+            long tookMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+
+            PageResult result = reconcile(page);
+            first += page.size();
+            boolean done = page.size() < pageSize;
+            if (!saveProgress(first, result, done)) {
+                log.warn("⚠️ Keycloak user sync lost its lease at offset {}, stopping", first);
+                return;
+            }
+            if (done) {
+                log.info("✅ Keycloak user sync completed, {} users checked", first);
+                return;
+            }
+
+            // Back off while Keycloak is slow, i.e. busy with interactive traffic
+            delay = tookMillis > slowPageMillis
+                    ? Math.min(delay * 2, maxPageDelayMillis)
+                    : Math.max(pageDelayMillis, delay / 2);
+            Thread.sleep(delay);
+        }
+    }
+
+    private PageResult reconcile(List<UserRepresentation> page) {
+        List<UserRepresentation> users = new ArrayList<>(page.size());
+        long skipped = 0;
+        for (UserRepresentation user : page) {
+            // email is uniquely indexed, documents without one would collide
+            if (user.getEmail() == null || user.getEmail().isBlank()) {
+                skipped++;
+            } else {
+                users.add(user);
+            }
+        }
+        if (users.isEmpty()) {
+            return new PageResult(0, 0, 0, skipped, 0);
+        }
+
+        Map<String, UserAccountStatus> existing = userAccountStatusRepository
+                .findByKeycloakUserIdIn(users.stream().map(UserRepresentation::getId).toList())
+                .stream()
+                .collect(Collectors.toMap(UserAccountStatus::getKeycloakUserId, Function.identity()));
+
+        BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UserAccountStatus.class);
+        List<String> changedIds = new ArrayList<>();
+        long unchanged = 0;
+        LocalDateTime now = LocalDateTime.now();
+        for (UserRepresentation user : users) {
+            UserAccountStatus status = existing.get(user.getId());
+            if (status == null) {
+                // Upsert, a login may create the document at the same moment
+                operations.upsert(Query.query(Criteria.where("keycloakUserId").is(user.getId())), new Update()
+                        .setOnInsert("email", user.getEmail())
+                        .setOnInsert("orgSetupCompleted", false)
+                        .setOnInsert("createdAt", now)
+                        .setOnInsert("updatedAt", now));
+            } else if (!user.getEmail().equals(status.getEmail())) {
+                operations.updateOne(Query.query(Criteria.where("_id").is(status.getId())), new Update()
+                        .set("email", user.getEmail())
+                        .set("updatedAt", now));
+                changedIds.add(status.getId());
+            } else {
+                unchanged++;
+            }
+        }
+        if (users.size() == unchanged) {
+            return new PageResult(0, 0, unchanged, skipped, 0);
+        }
+
+        BulkWriteResult written;
+        long failed = 0;
+        try {
+            written = operations.execute();
+        } catch (BulkOperationException e) {
+            // Typically an email that another status document still holds; the rest of the page is applied
+            failed = e.getErrors().size();
+            written = e.getResult();
+            log.warn("⚠️ Keycloak user sync could not apply {} changes: {}", failed, e.getErrors().get(0).getMessage());
+        }
+
+        // Only updated documents can be cached, missing ones are never cached
+        for (String id : changedIds) {
+            cacheInvalidationBus.publish(UserAccountStatusServiceImpl.COLLECTION, id);
+        }
+        return new PageResult(written.getUpserts().size(), written.getModifiedCount(), unchanged, skipped, failed);
+    }
+
+    private boolean saveProgress(int first, PageResult result, boolean done) {
+        Instant now = Instant.now();
+        Update update = new Update()
+                .set("nextFirst", done ? 0 : first)
+                .set("lastPageAt", now)
+                .set("leaseUntil", done ? now : now.plusMillis(leaseMillis))
+                .inc("created", result.created())
+                .inc("updated", result.updated())
+                .inc("unchanged", result.unchanged())
+                .inc("skipped", result.skipped())
+                .inc("failed", result.failed());
+        if (done) {
+            update.set("completedAt", now);
+        }
+        return mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(JOB_ID).and("leaseOwner").is(instanceId)),
+                update, SyncCheckpoint.class).getMatchedCount() == 1;
+    }
+
+    private record PageResult(long created, long updated, long unchanged, long skipped, long failed) {
+    }
+}
@@ -1,26 +1,58 @@
 package com.example.Keycloak.service.impl;
 
+import com.example.Keycloak.cache.CacheInvalidationBus;
+import com.example.Keycloak.exception.OrganizationAlreadyExistsException;
 import com.example.Keycloak.model.entity.Organization;
 import com.example.Keycloak.model.dto.OrganizationSetupDTO;
 import com.example.Keycloak.repository.OrganizationRepository;
 import com.example.Keycloak.service.OrganizationService;
-import lombok.RequiredArgsConstructor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 
+/**
+ * Organizations are read-through cached by id; updates on any replica evict them everywhere
+ * through the CacheInvalidationBus
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class OrganizationServiceImpl implements OrganizationService {
 
+    static final String COLLECTION = "organizations";
+
     private final OrganizationRepository organizationRepository;
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    private final Cache<String, Organization> byId;
+
+    public OrganizationServiceImpl(OrganizationRepository organizationRepository,
+                                   CacheInvalidationBus cacheInvalidationBus,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${app.cache.organization.max-size:10000}") long maxSize,
+                                   @Value("${app.cache.organization.ttl:10m}") Duration ttl) {
+        this.organizationRepository = organizationRepository;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        this.byId = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, byId, "organizationById");
+        cacheInvalidationBus.register(COLLECTION, this::evict);
+    }
 
     @Override
-    public Organization createOrganization(OrganizationSetupDTO organizationSetupDTO) {
+    public Organization createOrganization(OrganizationSetupDTO organizationSetupDTO, String ownerKeycloakUserId) {
         Organization organization = Organization.builder()
-                .name(organizationSetupDTO.getName())
+                .name(organizationSetupDTO.getName().trim())
                 .description(organizationSetupDTO.getDescription())
                 .industry(organizationSetupDTO.getIndustry())
                 .website(organizationSetupDTO.getWebsite())
@@ -30,23 +62,36 @@ public class OrganizationServiceImpl implements OrganizationService {
                 .country(organizationSetupDTO.getCountry())
                 .zipCode(organizationSetupDTO.getZipCode())
                 .phone(organizationSetupDTO.getPhone())
+                .ownerKeycloakUserId(ownerKeycloakUserId)
                 .createdAt(LocalDateTime.now())
                 .updatedAt(LocalDateTime.now())
                 .build();
 
-        return organizationRepository.save(organization);
+        // Single insert; the unique name index decides, so concurrent submissions cannot both succeed
+        try {
+            return organizationRepository.insert(organization);
+        } catch (DuplicateKeyException e) {
+            log.info("⚠️ Organization insert rejected by unique index: name={}, owner={}", organization.getName(), ownerKeycloakUserId);
+            throw new OrganizationAlreadyExistsException(organization.getName(), e);
+        }
     }
 
     @Override
     public Organization findById(String id) {
-        return organizationRepository.findById(id).orElse(null);
+        return byId.get(id, key -> organizationRepository.findById(key).orElse(null));
+    }
+
+    @Override
+    public Organization findByOwner(String ownerKeycloakUserId) {
+        return organizationRepository.findByOwnerKeycloakUserId(ownerKeycloakUserId).orElse(null);
     }
 
     @Override
     public Organization updateOrganization(String id, OrganizationSetupDTO organizationSetupDTO) {
-        Organization organization = findById(id);
+        // Fresh copy, cached instances are shared between requests and must not be modified
+        Organization organization = organizationRepository.findById(id).orElse(null);
         if (organization != null) {
-            organization.setName(organizationSetupDTO.getName());
+            organization.setName(organizationSetupDTO.getName().trim());
             organization.setDescription(organizationSetupDTO.getDescription());
             organization.setIndustry(organizationSetupDTO.getIndustry());
             organization.setWebsite(organizationSetupDTO.getWebsite());
@@ -57,7 +102,14 @@ public class OrganizationServiceImpl implements OrganizationService {
             organization.setZipCode(organizationSetupDTO.getZipCode());
             organization.setPhone(organizationSetupDTO.getPhone());
             organization.setUpdatedAt(LocalDateTime.now());
-            return organizationRepository.save(organization);
+            Organization saved;
+            try {
+                saved = organizationRepository.save(organization);
+            } catch (DuplicateKeyException e) {
+                throw new OrganizationAlreadyExistsException(organization.getName(), e);
+            }
+            evictEverywhere(id);
+            return saved;
         }
         return null;
     }
@@ -65,10 +117,24 @@ public class OrganizationServiceImpl implements OrganizationService {
     @Override
     public void deleteOrganization(String id) {
         organizationRepository.deleteById(id);
+        evictEverywhere(id);
     }
 
     @Override
     public boolean existsByName(String name) {
         return organizationRepository.existsByName(name);
     }
+
+    private void evictEverywhere(String id) {
+        evict(id);
+        cacheInvalidationBus.publish(COLLECTION, id);
+    }
+
+    private void evict(String id) {
+        if (id == null) {
+            byId.invalidateAll();
+        } else {
+            byId.invalidate(id);
+        }
+    }
 }
@@ -0,0 +1,60 @@
+package com.example.Keycloak.service.impl;
+
+import com.example.Keycloak.exception.OrganizationAlreadyExistsException;
+import com.example.Keycloak.model.dto.OrganizationSetupDTO;
+import com.example.Keycloak.model.entity.Organization;
+import com.example.Keycloak.model.entity.UserAccountStatus;
+import com.example.Keycloak.service.OrganizationService;
+import com.example.Keycloak.service.OrganizationSetupService;
+import com.example.Keycloak.service.UserAccountStatusService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * Organization setup as an idempotent, forward-recovering two-step saga: insert the organization, then link it
+ * to the account status
+ * Deliberately no multi-document transaction: that needs a replica set, and a standalone MongoDB is a supported setup
+ * - the unique owner index makes a retry after a crash or a failed link find and reuse the organization left behind
+ * - nothing is ever rolled back, so a concurrent attempt resuming the organization can never link to one that
+ *   another attempt has just deleted; an unlinked organization only lives until the user retries the setup
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrganizationSetupServiceImpl implements OrganizationSetupService {
+
+    private final OrganizationService organizationService;
+    private final UserAccountStatusService userAccountStatusService;
+
+    @Override
+    public Organization completeSetup(String keycloakUserId, OrganizationSetupDTO organizationSetupDTO) {
+        Organization organization;
+        try {
+            organization = organizationService.createOrganization(organizationSetupDTO, keycloakUserId);
+        } catch (OrganizationAlreadyExistsException e) {
+            // Either the name is taken, or an earlier attempt by this user got as far as the insert
+            organization = organizationService.findByOwner(keycloakUserId);
+            if (organization == null) {
+                throw e;
+            }
+            log.info("🔁 Resuming organization setup for user {} with organization {}", keycloakUserId, organization.getId());
+            // Apply this submission; throws again if it renames to a name someone else has
+            Organization updated = organizationService.updateOrganization(organization.getId(), organizationSetupDTO);
+            if (updated == null) {
+                // Deleted in the meantime, e.g. by an admin; a retry creates it anew
+                throw new IllegalStateException("Organization " + organization.getId() + " disappeared during setup, please retry");
+            }
+            organization = updated;
+        }
+
+        // On failure the organization stays in place for the next attempt to pick up
+        UserAccountStatus linked = userAccountStatusService.updateOrganizationSetup(keycloakUserId, organization.getId());
+        if (linked == null) {
+            throw new IllegalStateException("No account status for user " + keycloakUserId);
+        }
+
+        log.info("✅ Organization setup completed for user {}: {}", keycloakUserId, organization.getId());
+        return organization;
+    }
+}
@@ -1,20 +1,67 @@
 package com.example.Keycloak.service.impl;
 
+import com.example.Keycloak.cache.CacheInvalidationBus;
 import com.example.Keycloak.model.entity.UserAccountStatus;
 import com.example.Keycloak.repository.UserAccountStatusRepository;
 import com.example.Keycloak.service.UserAccountStatusService;
-import lombok.RequiredArgsConstructor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 
+/**
+ * Account status lookups are read-through cached, the login and dashboard path asks for the same
+ * user several times per request; writes through this service evict the cached entries
+ * Hit, miss and eviction counts are exported as cache.* metrics
+ * Writes made by other replicas arrive through the CacheInvalidationBus
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class UserAccountStatusServiceImpl implements UserAccountStatusService {
 
+    static final String COLLECTION = "user_account_status";
+
     private final UserAccountStatusRepository userAccountStatusRepository;
+    private final MongoTemplate mongoTemplate;
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    private final Cache<String, UserAccountStatus> byKeycloakUserId;
+    private final Cache<String, UserAccountStatus> byEmail;
+
+    public UserAccountStatusServiceImpl(UserAccountStatusRepository userAccountStatusRepository,
+                                        MongoTemplate mongoTemplate,
+                                        CacheInvalidationBus cacheInvalidationBus,
+                                        MeterRegistry meterRegistry,
+                                        @Value("${app.cache.account-status.max-size:10000}") long maxSize,
+                                        @Value("${app.cache.account-status.ttl:5m}") Duration ttl) {
+        this.userAccountStatusRepository = userAccountStatusRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        this.byKeycloakUserId = buildCache(maxSize, ttl);
+        this.byEmail = buildCache(maxSize, ttl);
+        CaffeineCacheMetrics.monitor(meterRegistry, byKeycloakUserId, "accountStatusByKeycloakUserId");
+        CaffeineCacheMetrics.monitor(meterRegistry, byEmail, "accountStatusByEmail");
+        cacheInvalidationBus.register(COLLECTION, this::evictById);
+    }
+
+    private static Cache<String, UserAccountStatus> buildCache(long maxSize, Duration ttl) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
 
     @Override
     public UserAccountStatus createUserAccountStatus(String keycloakUserId, String email) {
@@ -26,31 +73,39 @@ public class UserAccountStatusServiceImpl implements UserAccountStatusService {
                 .updatedAt(LocalDateTime.now())
                 .build();
 
-        return userAccountStatusRepository.save(userAccountStatus);
+        UserAccountStatus saved = userAccountStatusRepository.save(userAccountStatus);
+        evict(saved);
+        return saved;
     }
 
     @Override
     public UserAccountStatus findByKeycloakUserId(String keycloakUserId) {
-        return userAccountStatusRepository.findByKeycloakUserId(keycloakUserId)
-                .orElse(null);
+        // Misses are not cached, a user created a moment later is found on the next call
+        return byKeycloakUserId.get(keycloakUserId, key ->
+                userAccountStatusRepository.findByKeycloakUserId(key).orElse(null));
     }
 
     @Override
     public UserAccountStatus findByEmail(String email) {
-        return userAccountStatusRepository.findByEmail(email)
-                .orElse(null);
+        return byEmail.get(email, key ->
+                userAccountStatusRepository.findByEmail(key).orElse(null));
     }
 
     @Override
     public UserAccountStatus updateOrganizationSetup(String keycloakUserId, String organizationId) {
-        UserAccountStatus userAccountStatus = findByKeycloakUserId(keycloakUserId);
-        if (userAccountStatus != null) {
-            userAccountStatus.setOrganizationId(organizationId);
-            userAccountStatus.setOrgSetupCompleted(true);
-            userAccountStatus.setUpdatedAt(LocalDateTime.now());
-            return userAccountStatusRepository.save(userAccountStatus);
+        // Targeted $set in one round trip, no read-before-write and no full-document rewrite
+        UserAccountStatus saved = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("keycloakUserId").is(keycloakUserId)),
+                new Update()
+                        .set("organizationId", organizationId)
+                        .set("orgSetupCompleted", true)
+                        .set("updatedAt", LocalDateTime.now()),
+                FindAndModifyOptions.options().returnNew(true),
+                UserAccountStatus.class);
+        if (saved != null) {
+            evict(saved);
         }
-        return null;
+        return saved;
     }
 
     @Override
@@ -58,4 +113,23 @@ public class UserAccountStatusServiceImpl implements UserAccountStatusService {
         UserAccountStatus userAccountStatus = findByKeycloakUserId(keycloakUserId);
         return userAccountStatus != null && userAccountStatus.getOrgSetupCompleted();
     }
+
+    private void evict(UserAccountStatus userAccountStatus) {
+        byKeycloakUserId.invalidate(userAccountStatus.getKeycloakUserId());
+        if (userAccountStatus.getEmail() != null) {
+            byEmail.invalidate(userAccountStatus.getEmail());
+        }
+        cacheInvalidationBus.publish(COLLECTION, userAccountStatus.getId());
+    }
+
+    // Invalidations only carry the document id; writes are rare, so a scan of the cached values is fine
+    private void evictById(String id) {
+        if (id == null) {
+            byKeycloakUserId.invalidateAll();
+            byEmail.invalidateAll();
+            return;
+        }
+        byKeycloakUserId.asMap().values().removeIf(status -> id.equals(status.getId()));
+        byEmail.asMap().values().removeIf(status -> id.equals(status.getId()));
+    }
 }
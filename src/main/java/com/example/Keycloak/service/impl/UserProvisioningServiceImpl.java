@@ -0,0 +1,486 @@
+package com.example.Keycloak.service.impl;
+
+import com.example.Keycloak.config.KeycloakAdminResources;
+import com.example.Keycloak.exception.UploadTooLargeException;
+import com.example.Keycloak.exception.UserAlreadyExistsException;
+import com.example.Keycloak.model.dto.UserProvisioningResultDTO;
+import com.example.Keycloak.model.dto.UserProvisioningSummaryDTO;
+import com.example.Keycloak.model.dto.UserRegistrationDTO;
+import com.example.Keycloak.service.KeycloakService;
+import com.example.Keycloak.service.UserProvisioningService;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import jakarta.ws.rs.core.Response;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.keycloak.representations.idm.PartialImportRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Creates users from an uploaded list, for onboarding customers with thousands of accounts
+ * Uploads are spooled to a size-limited temp file and read row by row (NDJSON lines or CSV records). In create mode up to {@code parallelism} rows per run
+ * are in flight on the pooled admin client, each going through KeycloakService.createUser
+ * (create with embedded credentials, then the verification email into the outbox); the reading thread keeps
+ * submitting while earlier rows complete and reports results in completion order
+ * Partial import mode sends batches of users in one admin call and skips existing ones
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UserProvisioningServiceImpl implements UserProvisioningService {
+
+    private static final String CSV_HEADER = "firstname";
+    private static final int CSV_COLUMNS = 5;
+
+    // Without a schema every record is an array of strings; values are not trimmed, spaces may be part of a password
+    private static final ObjectReader CSV_ROWS = new CsvMapper()
+            .reader()
+            .with(CsvParser.Feature.SKIP_EMPTY_LINES);
+
+    private final KeycloakService keycloakService;
+    private final KeycloakAdminResources keycloakAdminResources;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${keycloak.realm}")
+    private String realm;
+
+    @Value("${app.provisioning.parallelism:8}")
+    private int parallelism;
+
+    @Value("${app.provisioning.max-concurrent-runs:2}")
+    private int maxConcurrentRuns;
+
+    @Value("${app.provisioning.partial-import-batch-size:500}")
+    private int partialImportBatchSize;
+
+    @Value("${app.provisioning.max-upload-size:50MB}")
+    private DataSize maxUploadSize;
+
+    private ThreadPoolExecutor executor;
+    private Semaphore runs;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger counter = new AtomicInteger();
+        int threads = parallelism * maxConcurrentRuns;
+        // Queue stays short, every run keeps at most parallelism rows in flight
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "user-provisioning-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        runs = new Semaphore(maxConcurrentRuns);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public Provisioning prepare(InputStream rows, boolean csv, boolean partialImport) throws IOException {
+        if (!runs.tryAcquire()) {
+            throw new RejectedExecutionException("Too many user provisioning runs in progress");
+        }
+        Path file = null;
+        try {
+            file = Files.createTempFile("user-provisioning-", csv ? ".csv" : ".ndjson");
+            spool(rows, file);
+        } catch (IOException | RuntimeException e) {
+            runs.release();
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+            throw e;
+        }
+        return new SpooledProvisioning(file, csv, partialImport);
+    }
+
+    private void spool(InputStream rows, Path file) throws IOException {
+        long limit = maxUploadSize.toBytes();
+        long total = 0;
+        byte[] buffer = new byte[8192];
+        try (OutputStream out = Files.newOutputStream(file)) {
+            int read;
+            while ((read = rows.read(buffer)) != -1) {
+                total += read;
+                if (total > limit) {
+                    throw new UploadTooLargeException(limit);
+                }
+                out.write(buffer, 0, read);
+            }
+        }
+    }
+
+    // Holds the run slot and the temp file until it has run or is discarded, whichever comes first
+    private final class SpooledProvisioning implements Provisioning {
+
+        private final Path file;
+        private final boolean csv;
+        private final boolean partialImport;
+        private final AtomicBoolean discarded = new AtomicBoolean();
+
+        private SpooledProvisioning(Path file, boolean csv, boolean partialImport) {
+            this.file = file;
+            this.csv = csv;
+            this.partialImport = partialImport;
+        }
+
+        @Override
+        public UserProvisioningSummaryDTO run(Consumer<UserProvisioningResultDTO> results) throws IOException {
+            if (discarded.get()) {
+                throw new IllegalStateException("User provisioning was already run or discarded");
+            }
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                Run run = new Run(results, partialImport);
+                run.process(reader, csv);
+                log.info("👥 User provisioning finished: {}", run.summary);
+                return run.summary;
+            } finally {
+                discard();
+            }
+        }
+
+        @Override
+        public void discard() {
+            if (!discarded.compareAndSet(false, true)) {
+                return;
+            }
+            runs.release();
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("⚠️ Could not delete provisioning upload {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    private final class Run {
+
+        private final Consumer<UserProvisioningResultDTO> results;
+        private final boolean partialImport;
+        private final UserProvisioningSummaryDTO summary;
+        private final long startedAt = System.nanoTime();
+
+        // Create mode: rows completed by the workers, drained by the reading thread
+        private final BlockingQueue<UserProvisioningResultDTO> completed = new LinkedBlockingQueue<>();
+        private int inFlight;
+
+        // Partial import mode: valid rows waiting for the next batch
+        private final List<Row> batch = new ArrayList<>();
+        // Lower-cased usernames in the batch; Keycloak usernames are case-insensitive
+        private final Set<String> batchUsernames = new HashSet<>();
+
+        private Run(Consumer<UserProvisioningResultDTO> results, boolean partialImport) {
+            this.results = results;
+            this.partialImport = partialImport;
+            this.summary = UserProvisioningSummaryDTO.builder()
+                    .mode(partialImport ? "partial-import" : "create")
+                    .build();
+        }
+
+        private void process(BufferedReader reader, boolean csv) throws IOException {
+            try {
+                readRows(reader, csv, objectMapper, row -> {
+                    summary.setRows(summary.getRows() + 1);
+                    accept(row);
+                    drainAvailable();
+                });
+                if (!batch.isEmpty()) {
+                    importBatch();
+                }
+                while (inFlight > 0) {
+                    take();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("User provisioning interrupted", e);
+            } finally {
+                long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+                summary.setDurationMillis(millis);
+                summary.setRowsPerSecond(summary.getRows() * 1000.0 / Math.max(millis, 1));
+            }
+        }
+
+        private void accept(Row row) throws InterruptedException {
+            if (row.user == null) {
+                emit(result(row, UserProvisioningResultDTO.INVALID, null, row.error));
+                return;
+            }
+            Set<ConstraintViolation<UserRegistrationDTO>> violations = validator.validate(row.user);
+            if (!violations.isEmpty()) {
+                emit(result(row, UserProvisioningResultDTO.INVALID, null, violations.stream()
+                        .map(ConstraintViolation::getMessage)
+                        .sorted()
+                        .collect(Collectors.joining("; "))));
+                return;
+            }
+
+            if (partialImport) {
+                // Two rows for one user would leave one of them without a result
+                if (!batchUsernames.add(row.user.getUsername().toLowerCase(Locale.ROOT))) {
+                    emit(result(row, UserProvisioningResultDTO.INVALID, null, "Duplicate username in batch"));
+                    return;
+                }
+                batch.add(row);
+                if (batch.size() == partialImportBatchSize) {
+                    importBatch();
+                }
+                return;
+            }
+
+            while (inFlight >= parallelism) {
+                take();
+            }
+            executor.execute(() -> completed.add(create(row)));
+            inFlight++;
+        }
+
+        private void drainAvailable() {
+            UserProvisioningResultDTO result;
+            while ((result = completed.poll()) != null) {
+                inFlight--;
+                emit(result);
+            }
+        }
+
+        private void take() throws InterruptedException {
+            UserProvisioningResultDTO result = completed.take();
+            inFlight--;
+            emit(result);
+        }
+
+        private void importBatch() {
+            List<UserRepresentation> users = new ArrayList<>(batch.size());
+            Map<String, Row> byUsername = new HashMap<>();
+            for (Row row : batch) {
+                users.add(KeycloakServiceImpl.newUserRepresentation(row.user));
+                byUsername.put(row.user.getUsername().toLowerCase(Locale.ROOT), row);
+            }
+            PartialImportRepresentation partialImport = new PartialImportRepresentation();
+            partialImport.setUsers(users);
+            partialImport.setIfResourceExists(PartialImportRepresentation.Policy.SKIP.name());
+
+            try {
+                JsonNode response = keycloakAdminResources.timed("partialImport", () -> {
+                    try (Response http = keycloakAdminResources.realm(realm).partialImport(partialImport)) {
+                        if (http.getStatus() != Response.Status.OK.getStatusCode()) {
+                            throw new IllegalStateException("Keycloak returned status " + http.getStatus());
+                        }
+                        return objectMapper.readTree(http.readEntity(String.class));
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Unreadable partial import response", e);
+                    }
+                });
+
+                // Results name users by their username as sent, or as stored (lower-cased) when skipped
+                for (JsonNode entry : response.path("results")) {
+                    Row row = byUsername.remove(entry.path("resourceName").asText().toLowerCase(Locale.ROOT));
+                    if (row == null) {
+                        continue;
+                    }
+                    if ("ADDED".equals(entry.path("action").asText())) {
+                        String userId = entry.path("id").asText(null);
+                        emit(result(row, UserProvisioningResultDTO.CREATED, userId, null));
+                        queueVerificationEmail(row, userId);
+                    } else {
+                        emit(result(row, UserProvisioningResultDTO.EXISTS, entry.path("id").asText(null), null));
+                    }
+                }
+                for (Row row : byUsername.values()) {
+                    emit(result(row, UserProvisioningResultDTO.FAILED, null, "Missing from partial import result"));
+                }
+            } catch (RuntimeException e) {
+                // Keycloak imports a batch in one transaction, so the whole batch failed
+                log.error("Partial import of {} users failed: {}", batch.size(), e.getMessage());
+                for (Row row : batch) {
+                    emit(result(row, UserProvisioningResultDTO.FAILED, null, e.getMessage()));
+                }
+            }
+            batch.clear();
+            batchUsernames.clear();
+        }
+
+        private void queueVerificationEmail(Row row, String userId) {
+            if (userId == null) {
+                return;
+            }
+            try {
+                keycloakService.sendVerificationEmail(userId, row.user.getEmail(), row.user.getFirstName());
+            } catch (RuntimeException e) {
+                log.warn("⚠️ Verification email for provisioned user {} not queued: {}", userId, e.getMessage());
+            }
+        }
+
+        private void emit(UserProvisioningResultDTO result) {
+            switch (result.getStatus()) {
+                case UserProvisioningResultDTO.CREATED -> summary.setCreated(summary.getCreated() + 1);
+                case UserProvisioningResultDTO.EXISTS -> summary.setExisting(summary.getExisting() + 1);
+                case UserProvisioningResultDTO.INVALID -> summary.setInvalid(summary.getInvalid() + 1);
+                default -> summary.setFailed(summary.getFailed() + 1);
+            }
+            rowCounter(result.getStatus()).increment();
+            results.accept(result);
+        }
+    }
+
+    // Runs on the worker threads
+    private UserProvisioningResultDTO create(Row row) {
+        try {
+            String userId = keycloakService.createUser(row.user);
+            return result(row, UserProvisioningResultDTO.CREATED, userId, null);
+        } catch (UserAlreadyExistsException e) {
+            return result(row, UserProvisioningResultDTO.EXISTS, null, null);
+        } catch (RuntimeException e) {
+            String error = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            return result(row, UserProvisioningResultDTO.FAILED, null, error);
+        }
+    }
+
+    /**
+     * Reads upload rows, numbered by the line they start on; blank lines and a CSV header row are skipped
+     * Rows that cannot be read come with a null user and an error
+     */
+    static void readRows(BufferedReader reader, boolean csv, ObjectMapper objectMapper, RowHandler rows)
+            throws IOException, InterruptedException {
+        if (!csv) {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                UserRegistrationDTO user;
+                try {
+                    user = objectMapper.readValue(line, UserRegistrationDTO.class);
+                } catch (JsonProcessingException e) {
+                    user = null;
+                }
+                rows.accept(user != null ? new Row(lineNumber, user, null) : new Row(lineNumber, null, "Unreadable row"));
+            }
+            return;
+        }
+
+        // Token by token rather than through a MappingIterator, to number rows by the line they start on
+        try (JsonParser parser = CSV_ROWS.createParser(reader)) {
+            boolean first = true;
+            List<String> columns = new ArrayList<>();
+            while (true) {
+                columns.clear();
+                long lineNumber = 0;
+                try {
+                    if (parser.nextToken() != JsonToken.START_ARRAY) {
+                        return;
+                    }
+                    while (parser.nextToken() == JsonToken.VALUE_STRING) {
+                        if (columns.isEmpty()) {
+                            lineNumber = parser.currentTokenLocation().getLineNr();
+                        }
+                        columns.add(parser.getText());
+                    }
+                } catch (JsonProcessingException e) {
+                    // Typically an unclosed quote, nothing after it can be told apart
+                    rows.accept(new Row(lineNumber > 0 ? lineNumber : parser.currentLocation().getLineNr(), null, "Unreadable row"));
+                    return;
+                }
+                if (first && !columns.isEmpty() && CSV_HEADER.equalsIgnoreCase(columns.get(0).trim())) {
+                    first = false;
+                    continue;
+                }
+                first = false;
+                rows.accept(csvRow(lineNumber, columns.toArray(String[]::new)));
+            }
+        }
+    }
+
+    private static Row csvRow(long lineNumber, String[] columns) {
+        if (columns.length < CSV_COLUMNS) {
+            return new Row(lineNumber, null, "Expected firstName,lastName,email,username,password");
+        }
+        // The password is last; unquoted commas in it split it into extra columns
+        String password = String.join(",", Arrays.copyOfRange(columns, CSV_COLUMNS - 1, columns.length));
+        return new Row(lineNumber, UserRegistrationDTO.builder()
+                .firstName(column(columns, 0))
+                .lastName(column(columns, 1))
+                .email(column(columns, 2))
+                .username(column(columns, 3))
+                .password(password)
+                .build(), null);
+    }
+
+    private static String column(String[] columns, int index) {
+        String value = columns[index].trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static UserProvisioningResultDTO result(Row row, String status, String userId, String error) {
+        return UserProvisioningResultDTO.builder()
+                .row(row.lineNumber)
+                .username(row.user != null ? row.user.getUsername() : null)
+                .email(row.user != null ? row.user.getEmail() : null)
+                .status(status)
+                .userId(userId)
+                .error(error)
+                .build();
+    }
+
+    private Counter rowCounter(String status) {
+        return Counter.builder("keycloak.provisioning.users")
+                .description("Rows processed by bulk user provisioning")
+                .tag("status", status)
+                .register(meterRegistry);
+    }
+
+    record Row(long lineNumber, UserRegistrationDTO user, String error) {
+    }
+
+    interface RowHandler {
+
+        void accept(Row row) throws InterruptedException;
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.Keycloak.service.impl;
+
+import com.example.Keycloak.service.VerificationTokenService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+
+/**
+ * Stateless email verification tokens: keyId.userId.expiresAt.nonce.signature
+ * The signature is HMAC-SHA256 over everything before it, base64url encoded, and is compared in constant time
+ * Several keys can be configured; the first one signs, all of them verify, so keys can be rotated
+ * without invalidating links already sent
+ * Each nonce maps to the outcome of its first use, kept for the token lifetime once it succeeded;
+ * a replayed link never reaches Keycloak again and reports what the first use actually did
+ * Without configured keys only the dev profile starts, with a random per-process key
+ */
+@Service
+@Slf4j
+public class VerificationTokenServiceImpl implements VerificationTokenService {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int NONCE_BYTES = 12;
+    // How long a replay waits for the first use of its token to finish
+    private static final long REPLAY_WAIT_SECONDS = 30;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecureRandom random = new SecureRandom();
+    // Initialised prototypes, cloned per use since Mac is not thread-safe
+    private final Map<String, Mac> keys = new LinkedHashMap<>();
+    private final String signingKeyId;
+    private final Duration ttl;
+    private final Cache<String, CompletableFuture<Boolean>> usedNonces;
+
+    public VerificationTokenServiceImpl(MeterRegistry meterRegistry,
+                                        Environment environment,
+                                        @Value("${app.verification-token.keys:}") String keyConfig,
+                                        @Value("${app.verification-token.ttl:24h}") Duration ttl,
+                                        @Value("${app.verification-token.replay-cache-max-size:100000}") long replayCacheMaxSize) {
+        this.ttl = ttl;
+        for (String entry : keyConfig.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int separator = entry.indexOf(':');
+            if (separator <= 0 || separator == entry.length() - 1) {
+                throw new IllegalArgumentException("Verification token keys must be keyId:secret pairs");
+            }
+            String keyId = entry.substring(0, separator).trim();
+            if (keyId.contains(".")) {
+                throw new IllegalArgumentException("Verification token key id must not contain '.': " + keyId);
+            }
+            byte[] secret = entry.substring(separator + 1).trim().getBytes(StandardCharsets.UTF_8);
+            if (secret.length < 32) {
+                log.warn("⚠️ Verification token key {} is shorter than 32 bytes", keyId);
+            }
+            keys.put(keyId, mac(secret));
+        }
+        if (keys.isEmpty()) {
+            if (!environment.acceptsProfiles(Profiles.of("dev"))) {
+                throw new IllegalStateException("app.verification-token.keys (VERIFICATION_TOKEN_KEYS) must be configured");
+            }
+            // Links stop working on restart and differ between replicas, fine for development only
+            byte[] secret = new byte[32];
+            random.nextBytes(secret);
+            keys.put("dev", mac(secret));
+            log.warn("⚠️ No app.verification-token.keys configured, using a random key for this process");
+        }
+        this.signingKeyId = keys.keySet().iterator().next();
+
+        this.usedNonces = Caffeine.newBuilder()
+                .maximumSize(replayCacheMaxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, usedNonces, "verificationTokenNonces");
+    }
+
+    @Override
+    public String issue(String userId) {
+        byte[] nonce = new byte[NONCE_BYTES];
+        random.nextBytes(nonce);
+        long expiresAt = System.currentTimeMillis() / 1000 + ttl.toSeconds();
+
+        String payload = signingKeyId + "." + userId + "." + expiresAt + "." + ENCODER.encodeToString(nonce);
+        return payload + "." + ENCODER.encodeToString(sign(keys.get(signingKeyId), payload));
+    }
+
+    @Override
+    public boolean consume(String token, Predicate<String> action) {
+        String[] parts = verify(token);
+        if (parts == null) {
+            return false;
+        }
+
+        String nonce = parts[3];
+        CompletableFuture<Boolean> outcome = new CompletableFuture<>();
+        CompletableFuture<Boolean> first = usedNonces.asMap().putIfAbsent(nonce, outcome);
+        if (first != null) {
+            return await(first);
+        }
+        boolean applied = false;
+        try {
+            applied = action.test(parts[1]);
+        } finally {
+            if (!applied) {
+                // Forget the failed use, the link can be tried again
+                usedNonces.asMap().remove(nonce, outcome);
+            }
+            outcome.complete(applied);
+        }
+        return applied;
+    }
+
+    // Token fields if the token is well-formed, correctly signed and not expired
+    private String[] verify(String token) {
+        if (token == null || token.length() > 512) {
+            return null;
+        }
+        String[] parts = token.split("\\.", -1);
+        if (parts.length != 5) {
+            return null;
+        }
+        Mac key = keys.get(parts[0]);
+        if (key == null) {
+            return null;
+        }
+
+        byte[] signature;
+        try {
+            signature = DECODER.decode(parts[4]);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        String payload = token.substring(0, token.lastIndexOf('.'));
+        if (!MessageDigest.isEqual(sign(key, payload), signature)) {
+            return null;
+        }
+
+        // Signature is valid, so the remaining fields were written by us
+        long expiresAt;
+        try {
+            expiresAt = Long.parseLong(parts[2]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (System.currentTimeMillis() / 1000 > expiresAt) {
+            return null;
+        }
+        return parts;
+    }
+
+    private static boolean await(CompletableFuture<Boolean> first) {
+        try {
+            return first.get(REPLAY_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        }
+    }
+
+    private static Mac mac(byte[] secret) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(secret, ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    private static byte[] sign(Mac prototype, String payload) {
+        try {
+            Mac mac = (Mac) prototype.clone();
+            return mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("HmacSHA256 implementation cannot be cloned", e);
+        }
+    }
+}
@@ -3,7 +3,7 @@ package com.example.Keycloak;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "app.verification-token.keys=test:0123456789abcdef0123456789abcdef")
 class KeycloakApplicationTests {
 
 	@Test
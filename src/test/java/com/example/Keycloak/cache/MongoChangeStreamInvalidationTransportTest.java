@@ -0,0 +1,55 @@
+package com.example.Keycloak.cache;
+
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MongoChangeStreamInvalidationTransportTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final MongoChangeStreamInvalidationTransport transport = new MongoChangeStreamInvalidationTransport(mongoTemplate);
+
+    @AfterEach
+    void tearDown() {
+        transport.stop();
+    }
+
+    @Test
+    void standaloneServerFailsStartup() {
+        when(mongoTemplate.executeCommand(any(Document.class))).thenReturn(new Document("isWritablePrimary", true));
+
+        assertThatThrownBy(() -> transport.start(List.of("users"), invalidation -> { }))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("replica set");
+    }
+
+    @Test
+    void replicaSetMemberStarts() {
+        when(mongoTemplate.executeCommand(any(Document.class))).thenReturn(new Document("setName", "rs0"));
+
+        assertThatCode(() -> transport.start(List.of("users"), invalidation -> { })).doesNotThrowAnyException();
+    }
+
+    @Test
+    void mongosStarts() {
+        when(mongoTemplate.executeCommand(any(Document.class))).thenReturn(new Document("msg", "isdbgrid"));
+
+        assertThatCode(() -> transport.start(List.of("users"), invalidation -> { })).doesNotThrowAnyException();
+    }
+
+    @Test
+    void unreachableServerIsLeftToTheWatcher() {
+        when(mongoTemplate.executeCommand(any(Document.class))).thenThrow(new IllegalStateException("timeout"));
+
+        assertThatCode(() -> transport.start(List.of("users"), invalidation -> { })).doesNotThrowAnyException();
+    }
+}
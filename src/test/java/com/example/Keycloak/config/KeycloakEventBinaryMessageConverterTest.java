@@ -0,0 +1,54 @@
+package com.example.Keycloak.config;
+
+import com.example.Keycloak.model.dto.KeycloakEventDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeycloakEventBinaryMessageConverterTest {
+
+    private final KeycloakEventBinaryMessageConverter converter = new KeycloakEventBinaryMessageConverter();
+
+    @Test
+    void writesWhatItReads() throws IOException {
+        KeycloakEventDTO event = KeycloakEventDTO.builder()
+                .eventId("id-1")
+                .eventType("LOGIN")
+                .userId("user-1")
+                .username("jane")
+                .email("jane@example.com")
+                .realmId("realm")
+                .timestamp(1_700_000_000_000L)
+                .build();
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+
+        converter.write(new KeycloakEventDTO[]{event}, MediaType.parseMediaType(KeycloakEventBinaryMessageConverter.BINARY), output);
+        KeycloakEventDTO[] read = converter.read(KeycloakEventDTO[].class, new MockHttpInputMessage(output.getBodyAsBytes()));
+
+        assertThat(read).containsExactly(event);
+    }
+
+    @Test
+    void malformedBodyIsNotReadable() {
+        MockHttpInputMessage input = new MockHttpInputMessage(new byte[]{'K', 'E', 'B', 1, 2});
+
+        assertThatThrownBy(() -> converter.read(KeycloakEventDTO[].class, input))
+                .isInstanceOf(HttpMessageNotReadableException.class);
+    }
+
+    @Test
+    void onlyHandlesEventArrays() {
+        MediaType binary = MediaType.parseMediaType(KeycloakEventBinaryMessageConverter.BINARY);
+
+        assertThat(converter.canRead(KeycloakEventDTO[].class, binary)).isTrue();
+        assertThat(converter.canRead(KeycloakEventDTO.class, binary)).isFalse();
+        assertThat(converter.canRead(KeycloakEventDTO[].class, MediaType.APPLICATION_JSON)).isFalse();
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.Keycloak.config;
+
+import com.example.Keycloak.model.entity.EmailBulkJob;
+import com.example.Keycloak.model.entity.UserAccountStatus;
+import com.example.Keycloak.repository.EmailBulkJobRepository;
+import com.example.Keycloak.service.UserAccountStatusService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.core.oidc.user.DefaultOidcUser;
+import org.springframework.security.oauth2.core.oidc.user.OidcUser;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class OrganizationAccessTest {
+
+    private final UserAccountStatusService userAccountStatusService = mock(UserAccountStatusService.class);
+    private final EmailBulkJobRepository emailBulkJobRepository = mock(EmailBulkJobRepository.class);
+    private final OrganizationAccess organizationAccess = new OrganizationAccess(userAccountStatusService, emailBulkJobRepository);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(organizationAccess, "adminRole", "admin");
+    }
+
+    @Test
+    void adminMayActOnAnyOrganization() {
+        assertThat(organizationAccess.isAllowed(authentication("user-1", "ROLE_admin"), "org-1", "bulk-email")).isTrue();
+        verifyNoInteractions(userAccountStatusService);
+    }
+
+    @Test
+    void memberWithRoleMayActOnOwnOrganization() {
+        when(userAccountStatusService.findByKeycloakUserId("user-1")).thenReturn(status("org-1"));
+
+        assertThat(organizationAccess.isAllowed(authentication("user-1", "ROLE_bulk-email"), "org-1", "bulk-email")).isTrue();
+    }
+
+    @Test
+    void memberWithRoleMayNotActOnAnotherOrganization() {
+        when(userAccountStatusService.findByKeycloakUserId("user-1")).thenReturn(status("org-1"));
+
+        assertThat(organizationAccess.isAllowed(authentication("user-1", "ROLE_bulk-email"), "org-2", "bulk-email")).isFalse();
+    }
+
+    @Test
+    void memberWithoutRoleIsDenied() {
+        when(userAccountStatusService.findByKeycloakUserId("user-1")).thenReturn(status("org-1"));
+
+        assertThat(organizationAccess.isAllowed(authentication("user-1", "OIDC_USER"), "org-1", "bulk-email")).isFalse();
+    }
+
+    @Test
+    void userWithoutStatusIsDenied() {
+        assertThat(organizationAccess.isAllowed(authentication("user-1", "ROLE_bulk-email"), "org-1", "bulk-email")).isFalse();
+    }
+
+    @Test
+    void anonymousIsDenied() {
+        assertThat(organizationAccess.isAllowed(null, "org-1", "bulk-email")).isFalse();
+        assertThat(organizationAccess.isAllowed(new TestingAuthenticationToken("anonymous", null, "ROLE_admin"),
+                "org-1", "bulk-email")).isFalse();
+    }
+
+    @Test
+    void creatorMayFollowOwnJob() {
+        when(emailBulkJobRepository.findById("job-1")).thenReturn(Optional.of(job(null, "user-1")));
+
+        assertThat(organizationAccess.isJobAllowed(authentication("user-1", "ROLE_bulk-email"), "job-1", "bulk-email")).isTrue();
+    }
+
+    @Test
+    void memberMayFollowOwnOrganizationsJob() {
+        when(emailBulkJobRepository.findById("job-1")).thenReturn(Optional.of(job("org-1", "user-2")));
+        when(userAccountStatusService.findByKeycloakUserId("user-1")).thenReturn(status("org-1"));
+
+        assertThat(organizationAccess.isJobAllowed(authentication("user-1", "ROLE_bulk-email"), "job-1", "bulk-email")).isTrue();
+    }
+
+    @Test
+    void memberMayNotFollowAnotherOrganizationsJob() {
+        when(emailBulkJobRepository.findById("job-1")).thenReturn(Optional.of(job("org-2", "user-2")));
+        when(userAccountStatusService.findByKeycloakUserId("user-1")).thenReturn(status("org-1"));
+
+        assertThat(organizationAccess.isJobAllowed(authentication("user-1", "ROLE_bulk-email"), "job-1", "bulk-email")).isFalse();
+    }
+
+    @Test
+    void memberMayNotFollowSomeoneElsesUploadJob() {
+        when(emailBulkJobRepository.findById("job-1")).thenReturn(Optional.of(job(null, "user-2")));
+        when(userAccountStatusService.findByKeycloakUserId("user-1")).thenReturn(status("org-1"));
+
+        assertThat(organizationAccess.isJobAllowed(authentication("user-1", "ROLE_bulk-email"), "job-1", "bulk-email")).isFalse();
+    }
+
+    @Test
+    void unknownJobIsDeniedUnlessAdmin() {
+        assertThat(organizationAccess.isJobAllowed(authentication("user-1", "ROLE_bulk-email"), "job-1", "bulk-email")).isFalse();
+        assertThat(organizationAccess.isJobAllowed(authentication("user-1", "ROLE_admin"), "job-1", "bulk-email")).isTrue();
+    }
+
+    private static EmailBulkJob job(String organizationId, String createdBy) {
+        return EmailBulkJob.builder().id("job-1").organizationId(organizationId).createdBy(createdBy).build();
+    }
+
+    private static TestingAuthenticationToken authentication(String subject, String... authorities) {
+        OidcIdToken idToken = new OidcIdToken("token", Instant.now(), Instant.now().plusSeconds(60), Map.of("sub", subject));
+        OidcUser user = new DefaultOidcUser(AuthorityUtils.createAuthorityList(authorities), idToken);
+        TestingAuthenticationToken authentication = new TestingAuthenticationToken(user, null, user.getAuthorities());
+        authentication.setAuthenticated(true);
+        return authentication;
+    }
+
+    private static UserAccountStatus status(String organizationId) {
+        return UserAccountStatus.builder().keycloakUserId("user-1").organizationId(organizationId).build();
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.Keycloak.controller;
+
+import com.example.Keycloak.exception.UploadTooLargeException;
+import com.example.Keycloak.model.dto.UserProvisioningResultDTO;
+import com.example.Keycloak.model.dto.UserProvisioningSummaryDTO;
+import com.example.Keycloak.service.UserProvisioningService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class UserProvisioningControllerTest {
+
+    private final UserProvisioningService userProvisioningService = mock(UserProvisioningService.class);
+    private final UserProvisioningService.Provisioning provisioning = mock(UserProvisioningService.Provisioning.class);
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        UserProvisioningController controller = new UserProvisioningController(userProvisioningService, new ObjectMapper());
+        ReflectionTestUtils.setField(controller, "timeout", Duration.ofSeconds(5));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void streamsResultsThenSummaryAndDiscardsTheUpload() throws Exception {
+        when(userProvisioningService.prepare(any(), anyBoolean(), anyBoolean())).thenReturn(provisioning);
+        when(provisioning.run(any())).thenAnswer(invocation -> {
+            Consumer<UserProvisioningResultDTO> results = invocation.getArgument(0);
+            results.accept(UserProvisioningResultDTO.builder().row(1).status(UserProvisioningResultDTO.CREATED).build());
+            return UserProvisioningSummaryDTO.builder().mode("create").rows(1).created(1).build();
+        });
+
+        MvcResult started = mockMvc.perform(post("/api/users/provisioning")
+                        .contentType("application/x-ndjson")
+                        .content("{}\n"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string(containsString("\"status\":\"CREATED\"")))
+                .andExpect(content().string(containsString("{\"summary\":")));
+
+        verify(provisioning).discard();
+    }
+
+    @Test
+    void tooManyRunsIsServiceUnavailable() throws Exception {
+        when(userProvisioningService.prepare(any(), anyBoolean(), anyBoolean())).thenThrow(new RejectedExecutionException("busy"));
+
+        mockMvc.perform(post("/api/users/provisioning").contentType("text/csv").content("a,b,c,d,e\n"))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    void oversizedUploadIsPayloadTooLarge() throws Exception {
+        when(userProvisioningService.prepare(any(), anyBoolean(), anyBoolean())).thenThrow(new UploadTooLargeException(10));
+
+        mockMvc.perform(post("/api/users/provisioning").contentType("text/csv").content("a,b,c,d,e\n"))
+                .andExpect(status().isPayloadTooLarge());
+    }
+}
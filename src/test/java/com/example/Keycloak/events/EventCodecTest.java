@@ -0,0 +1,136 @@
+package com.example.Keycloak.events;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EventCodecTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void jsonEscapesQuotesBackslashesAndControlCharacters() throws Exception {
+        BackendEvent event = new BackendEvent("id-1", BackendEvent.LOGIN, "user-1", "ev\"il\\name\n\t\u0001",
+                "ünïcødé@example.com", "account", "127.0.0.1", "realm", null, 1_700_000_000_000L);
+
+        EventCodec.EncodeBuffer out = EventCodec.buffer();
+        EventCodec.writeJson(event, out);
+        JsonNode json = objectMapper.readTree(new String(out.array(), 0, out.size(), StandardCharsets.UTF_8));
+
+        assertThat(json.get("username").asText()).isEqualTo("ev\"il\\name\n\t\u0001");
+        assertThat(json.get("email").asText()).isEqualTo("ünïcødé@example.com");
+        assertThat(json.get("source").isNull()).isTrue();
+        assertThat(json.get("timestamp").asLong()).isEqualTo(1_700_000_000_000L);
+    }
+
+    @Test
+    void jsonArrayHoldsEveryEvent() throws Exception {
+        EventCodec.EncodeBuffer out = EventCodec.buffer();
+        EventCodec.writeJsonArray(List.of(event("a"), event("b")), out);
+        JsonNode json = objectMapper.readTree(new String(out.array(), 0, out.size(), StandardCharsets.UTF_8));
+
+        assertThat(json.size()).isEqualTo(2);
+        assertThat(json.get(1).get("eventId").asText()).isEqualTo("b");
+    }
+
+    @Test
+    void binaryBatchRoundTrips() {
+        BackendEvent full = new BackendEvent("id-1", BackendEvent.REGISTRATION, "user-1", "名前",
+                "a@example.com", "account", "::1", "realm", BackendEvent.SOURCE_ADMIN_CREATE, -5L);
+        BackendEvent sparse = new BackendEvent(null, BackendEvent.LOGIN, null, null, null, null, null, null, null, 0L);
+
+        List<BackendEvent> read = EventCodec.readBinaryBatch(encode(List.of(full, sparse)));
+
+        assertThat(read).hasSize(2);
+        assertThat(read.get(0)).usingRecursiveComparison().ignoringFields("createdAt").isEqualTo(full);
+        assertThat(read.get(1)).usingRecursiveComparison().ignoringFields("createdAt").isEqualTo(sparse);
+    }
+
+    @Test
+    void emptyBatchRoundTrips() {
+        assertThat(EventCodec.readBinaryBatch(encode(List.of()))).isEmpty();
+    }
+
+    @Test
+    void longStringsUseMultiByteLengths() {
+        String username = "x".repeat(100_000);
+        BackendEvent event = new BackendEvent("id", BackendEvent.LOGIN, null, username, null, null, null, null, null, 1L);
+
+        assertThat(EventCodec.readBinaryBatch(encode(List.of(event))).get(0).getUsername()).isEqualTo(username);
+    }
+
+    @Test
+    void rejectsWrongMagic() {
+        ByteBuffer batch = encode(List.of(event("a")));
+        batch.put(0, (byte) 'X');
+
+        assertThatThrownBy(() -> EventCodec.readBinaryBatch(batch))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Not a Keycloak event batch");
+    }
+
+    @Test
+    void rejectsUnknownVersion() {
+        ByteBuffer batch = encode(List.of(event("a")));
+        batch.put(3, (byte) 9);
+
+        assertThatThrownBy(() -> EventCodec.readBinaryBatch(batch))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("version 9");
+    }
+
+    @Test
+    void rejectsTruncatedBatches() {
+        ByteBuffer batch = encode(List.of(event("a"), event("b")));
+        for (int length = 0; length < batch.limit(); length++) {
+            ByteBuffer truncated = ByteBuffer.wrap(Arrays.copyOf(batch.array(), length));
+            assertThatThrownBy(() -> EventCodec.readBinaryBatch(truncated)).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void rejectsImplausibleEventCount() {
+        byte[] batch = {'K', 'E', 'B', 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+
+        assertThatThrownBy(() -> EventCodec.readBinaryBatch(ByteBuffer.wrap(batch)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Invalid event count");
+    }
+
+    @Test
+    void rejectsStringLengthBeyondTheBatch() {
+        byte[] batch = {'K', 'E', 'B', 1, 1, 0x7F, 'a'};
+
+        assertThatThrownBy(() -> EventCodec.readBinaryBatch(ByteBuffer.wrap(batch)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("exceeds remaining");
+    }
+
+    @Test
+    void rejectsOverlongVarInt() {
+        byte[] batch = {'K', 'E', 'B', 1, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01};
+
+        assertThatThrownBy(() -> EventCodec.readBinaryBatch(ByteBuffer.wrap(batch)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Malformed varint");
+    }
+
+    private static BackendEvent event(String id) {
+        return new BackendEvent(id, BackendEvent.LOGIN, "user", "name", "a@example.com", "account",
+                "127.0.0.1", "realm", null, 1L);
+    }
+
+    private static ByteBuffer encode(List<BackendEvent> events) {
+        EventCodec.EncodeBuffer out = EventCodec.buffer();
+        EventCodec.writeBinaryBatch(events, out);
+        return ByteBuffer.wrap(Arrays.copyOf(out.array(), out.size()));
+    }
+}
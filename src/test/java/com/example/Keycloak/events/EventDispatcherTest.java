@@ -0,0 +1,62 @@
+package com.example.Keycloak.events;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EventDispatcherTest {
+
+    private static final int MAX_REPLAY_ATTEMPTS = 3;
+
+    @TempDir
+    Path directory;
+
+    private final BackendEventSender sender = mock(BackendEventSender.class);
+    private EventSpool spool;
+    private EventDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown(1000);
+        }
+    }
+
+    @Test
+    void replayGivesUpOnEventsThatKeepFailing() throws Exception {
+        spool = new EventSpool(directory, 4096, 4);
+        spool.open();
+        spool.append(event("e1"));
+        when(sender.isAvailable()).thenReturn(true);
+        // The backend keeps asking for the event to be retried
+        when(sender.sendBatch(anyList())).thenAnswer(invocation ->
+                new BackendEventSender.BatchResult(0, 0, new ArrayList<>(invocation.<List<BackendEvent>>getArgument(0))));
+
+        dispatcher = new EventDispatcher(16, 1, OverflowPolicy.SPILL_TO_DISK, 50, 10, 10, 2, MAX_REPLAY_ATTEMPTS,
+                spool, sender);
+        dispatcher.start();
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (dispatcher.getFailedCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertThat(dispatcher.getFailedCount()).isEqualTo(1);
+        assertThat(dispatcher.getRetriedCount()).isEqualTo(MAX_REPLAY_ATTEMPTS - 1);
+        assertThat(spool.hasPending()).isFalse();
+    }
+
+    private static BackendEvent event(String id) {
+        return new BackendEvent(id, BackendEvent.LOGIN, "user-" + id, id, id + "@example.com", "account",
+                "127.0.0.1", "realm", null, 1_700_000_000_000L, 1_700_000_000_000L, 0);
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.Keycloak.events;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventSpoolTest {
+
+    private static final int SEGMENT_BYTES = 4096;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsEventsInWriteOrder() throws IOException {
+        EventSpool spool = open(SEGMENT_BYTES, 4);
+        spool.append(event("e1"));
+        spool.append(event("e2").nextAttempt());
+
+        List<BackendEvent> read = new ArrayList<>();
+        assertThat(spool.read(10, read)).isEqualTo(2);
+
+        assertThat(read).extracting(BackendEvent::getEventId).containsExactly("e1", "e2");
+        assertThat(read.get(1).getAttempts()).isEqualTo(1);
+        assertThat(read.get(0).getEmail()).isEqualTo("e1@example.com");
+    }
+
+    @Test
+    void readRunsAheadOfTheCursorUntilCommit() throws IOException {
+        EventSpool spool = open(SEGMENT_BYTES, 4);
+        spool.append(event("e1"));
+        spool.append(event("e2"));
+
+        assertThat(ids(spool, 1)).containsExactly("e1");
+        assertThat(ids(spool, 10)).containsExactly("e2");
+        assertThat(spool.hasPending()).isTrue();
+
+        spool.rewind();
+        assertThat(ids(spool, 10)).containsExactly("e1", "e2");
+
+        spool.commit();
+        assertThat(spool.hasPending()).isFalse();
+        assertThat(ids(spool, 10)).isEmpty();
+    }
+
+    @Test
+    void uncommittedEventsAreReplayedAfterRestart() throws IOException {
+        EventSpool first = open(SEGMENT_BYTES, 4);
+        first.append(event("e1"));
+        first.append(event("e2"));
+        first.append(event("e3"));
+        assertThat(ids(first, 1)).containsExactly("e1");
+        first.commit();
+        // Handed out but never delivered before the crash
+        assertThat(ids(first, 1)).containsExactly("e2");
+        first.flush();
+
+        EventSpool second = open(SEGMENT_BYTES, 4);
+
+        assertThat(second.hasPending()).isTrue();
+        assertThat(ids(second, 10)).containsExactly("e2", "e3");
+    }
+
+    @Test
+    void writingResumesAfterTheLastCompleteRecord() throws IOException {
+        EventSpool first = open(SEGMENT_BYTES, 4);
+        first.append(event("e1"));
+        first.append(event("e2"));
+        first.flush();
+        // A torn write: the length made it to disk, the data did not
+        int end = recordEnd(segmentFiles().get(0), recordEnd(segmentFiles().get(0), 0));
+        corrupt(segmentFiles().get(0), end + 8);
+        writeInt(segmentFiles().get(0), end, 40);
+
+        EventSpool second = open(SEGMENT_BYTES, 4);
+        second.append(event("e3"));
+
+        assertThat(ids(second, 10)).containsExactly("e1", "e2", "e3");
+        assertThat(second.getDroppedRecords()).isZero();
+    }
+
+    @Test
+    void crcMismatchSkipsTheRestOfTheSegment() throws IOException {
+        EventSpool spool = open(SEGMENT_BYTES, 4);
+        spool.append(event("e1"));
+        spool.append(event("e2"));
+        spool.append(event("e3"));
+        Path segment = segmentFiles().get(0);
+        corrupt(segment, recordEnd(segment, 0) + 8);
+
+        assertThat(ids(spool, 10)).containsExactly("e1");
+        assertThat(spool.getDroppedRecords()).isEqualTo(1);
+
+        // The damaged segment is no longer written to
+        spool.append(event("e4"));
+        assertThat(ids(spool, 10)).containsExactly("e4");
+        spool.commit();
+        assertThat(spool.getSegmentCount()).isEqualTo(1);
+        assertThat(segmentFiles()).hasSize(1);
+    }
+
+    @Test
+    void rotatesIntoNewSegmentsAndDeletesReplayedOnes() throws IOException {
+        int segmentBytes = recordBytes() * 2 + 4;
+        EventSpool spool = open(segmentBytes, 8);
+        for (int i = 1; i <= 5; i++) {
+            spool.append(event("e" + i));
+        }
+        assertThat(spool.getSegmentCount()).isEqualTo(3);
+
+        assertThat(ids(spool, 3)).containsExactly("e1", "e2", "e3");
+        spool.commit();
+
+        assertThat(spool.getSegmentCount()).isEqualTo(2);
+        assertThat(segmentFiles()).hasSize(2);
+        assertThat(ids(spool, 10)).containsExactly("e4", "e5");
+    }
+
+    @Test
+    void discardsOldestSegmentAtTheCap() throws IOException {
+        int segmentBytes = recordBytes() * 2 + 4;
+        EventSpool spool = open(segmentBytes, 2);
+        for (int i = 1; i <= 6; i++) {
+            spool.append(event("e" + i));
+        }
+
+        assertThat(spool.getSegmentCount()).isEqualTo(2);
+        assertThat(spool.getDroppedRecords()).isEqualTo(2);
+        assertThat(segmentFiles()).hasSize(2);
+        assertThat(ids(spool, 10)).containsExactly("e3", "e4", "e5", "e6");
+    }
+
+    @Test
+    void rotationDuringReplayDoesNotCommitADiscardedSegment() throws IOException {
+        int segmentBytes = recordBytes() * 2 + 4;
+        EventSpool spool = open(segmentBytes, 2);
+        spool.append(event("e1"));
+        spool.append(event("e2"));
+        assertThat(ids(spool, 2)).containsExactly("e1", "e2");
+
+        // Retries spilled while the batch is out push the segment it came from over the cap
+        spool.append(event("e3"));
+        spool.append(event("e4"));
+        spool.append(event("e5"));
+        spool.commit();
+        spool.flush();
+
+        assertThat(ids(spool, 10)).containsExactly("e3", "e4", "e5");
+        assertThat(ids(open(segmentBytes, 2), 10)).containsExactly("e3", "e4", "e5");
+    }
+
+    private EventSpool open(int segmentBytes, int maxSegments) throws IOException {
+        EventSpool spool = new EventSpool(directory, segmentBytes, maxSegments);
+        spool.open();
+        return spool;
+    }
+
+    private static BackendEvent event(String id) {
+        return new BackendEvent(id, BackendEvent.LOGIN, "user-" + id, id, id + "@example.com", "account",
+                "127.0.0.1", "realm", null, 1_700_000_000_000L, 1_700_000_000_000L, 0);
+    }
+
+    private static List<String> ids(EventSpool spool, int max) {
+        List<BackendEvent> read = new ArrayList<>();
+        spool.read(max, read);
+        return read.stream().map(BackendEvent::getEventId).toList();
+    }
+
+    // Record size of the test events, all ids have the same length
+    private int recordBytes() throws IOException {
+        EventSpool probe = new EventSpool(directory.resolve("probe"), SEGMENT_BYTES, 2);
+        probe.open();
+        probe.append(event("e0"));
+        try (Stream<Path> files = Files.list(directory.resolve("probe"))) {
+            Path segment = files.filter(file -> file.toString().endsWith(".seg")).findFirst().orElseThrow();
+            return recordEnd(segment, 0);
+        }
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".seg")).sorted().toList();
+        }
+    }
+
+    private static int recordEnd(Path segment, int offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer length = ByteBuffer.allocate(4);
+            channel.read(length, offset);
+            return offset + 8 + length.getInt(0);
+        }
+    }
+
+    private static void corrupt(Path segment, int position) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer value = ByteBuffer.allocate(1);
+            channel.read(value, position);
+            value.put(0, (byte) (value.get(0) ^ 0xFF));
+            value.rewind();
+            channel.write(value, position);
+        }
+    }
+
+    private static void writeInt(Path segment, int position, int value) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, value), position);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.Keycloak.events;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatencyTrackerTest {
+
+    private final LatencyTracker tracker = new LatencyTracker(3.0, 50, 10_000);
+
+    @Test
+    void usesMaximumTimeoutUntilEnoughSamples() {
+        for (int i = 0; i < 19; i++) {
+            tracker.record(100);
+        }
+
+        assertThat(tracker.currentTimeout()).isEqualTo(Duration.ofMillis(10_000));
+    }
+
+    @Test
+    void followsP99TimesMultiplier() {
+        learn(100);
+
+        assertThat(tracker.getP99Millis()).isEqualTo(100);
+        assertThat(tracker.currentTimeout()).isEqualTo(Duration.ofMillis(300));
+    }
+
+    @Test
+    void neverGoesBelowMinimum() {
+        learn(5);
+
+        assertThat(tracker.currentTimeout()).isEqualTo(Duration.ofMillis(50));
+    }
+
+    @Test
+    void timeoutsRaiseTheTimeoutAtMostTwofoldPerRecompute() {
+        learn(100);
+
+        long previous = tracker.currentTimeout().toMillis();
+        for (int i = 0; i < 256; i++) {
+            tracker.recordTimeout();
+            long current = tracker.currentTimeout().toMillis();
+            assertThat(current).isBetween(previous, previous * 2);
+            previous = current;
+        }
+
+        assertThat(previous).isEqualTo(10_000);
+    }
+
+    private void learn(long latencyMillis) {
+        for (int i = 0; i < 256; i++) {
+            tracker.record(latencyMillis);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.Keycloak.mailjet.controller;
+
+import com.example.Keycloak.config.CustomAuthenticationSuccessHandler;
+import com.example.Keycloak.config.CustomOidcUserService;
+import com.example.Keycloak.config.OrganizationAccess;
+import com.example.Keycloak.config.SecurityConfig;
+import com.example.Keycloak.mailjet.model.dto.BulkEmailJobDTO;
+import com.example.Keycloak.mailjet.service.BulkEmailService;
+import com.example.Keycloak.mailjet.service.MailjetService;
+import com.example.Keycloak.model.entity.EmailBulkJob;
+import com.example.Keycloak.model.entity.UserAccountStatus;
+import com.example.Keycloak.repository.EmailBulkJobRepository;
+import com.example.Keycloak.service.UserAccountStatusService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.oidcLogin;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs the bulk email endpoints through the keycloak profile's filter chain
+ */
+@WebMvcTest(controllers = EmailController.class)
+@Import({SecurityConfig.class, OrganizationAccess.class, CustomAuthenticationSuccessHandler.class, CustomOidcUserService.class})
+@ActiveProfiles("keycloak")
+class EmailControllerSecurityTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private ClientRegistrationRepository clientRegistrationRepository;
+
+    @MockitoBean
+    private MailjetService mailjetService;
+
+    @MockitoBean
+    private BulkEmailService bulkEmailService;
+
+    @MockitoBean
+    private UserAccountStatusService userAccountStatusService;
+
+    @MockitoBean
+    private EmailBulkJobRepository emailBulkJobRepository;
+
+    @BeforeEach
+    void setUp() {
+        when(userAccountStatusService.findByKeycloakUserId("user-1"))
+                .thenReturn(UserAccountStatus.builder().keycloakUserId("user-1").organizationId("org-1").build());
+        when(emailBulkJobRepository.findById("own-job"))
+                .thenReturn(Optional.of(EmailBulkJob.builder().id("own-job").organizationId("org-1").createdBy("user-2").build()));
+        when(emailBulkJobRepository.findById("other-job"))
+                .thenReturn(Optional.of(EmailBulkJob.builder().id("other-job").organizationId("org-2").createdBy("user-3").build()));
+        when(bulkEmailService.getJob(any())).thenReturn(BulkEmailJobDTO.builder().jobId("own-job").build());
+    }
+
+    @Test
+    void bulkEmailHolderGetsForbiddenOnAnotherOrganizationsJob() throws Exception {
+        mockMvc.perform(get("/api/email/bulk/other-job").with(bulkEmailHolder()))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/api/email/bulk/other-job/recipients").with(bulkEmailHolder()))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void bulkEmailHolderMayFollowOwnOrganizationsJob() throws Exception {
+        mockMvc.perform(get("/api/email/bulk/own-job").with(bulkEmailHolder()))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void adminMayFollowAnyJob() throws Exception {
+        mockMvc.perform(get("/api/email/bulk/other-job").with(oidcLogin()
+                        .idToken(token -> token.subject("admin-1"))
+                        .authorities(new SimpleGrantedAuthority("ROLE_admin"))))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void bulkEmailHolderMayNotUploadRecipientLists() throws Exception {
+        mockMvc.perform(multipart("/api/email/bulk").with(bulkEmailHolder()).with(csrf()))
+                .andExpect(status().isForbidden());
+    }
+
+    private static RequestPostProcessor bulkEmailHolder() {
+        return oidcLogin()
+                .idToken(token -> token.subject("user-1"))
+                .authorities(new SimpleGrantedAuthority("ROLE_bulk-email"));
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.Keycloak.mailjet.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MailjetRateLimiterTest {
+
+    @Test
+    void burstIsAvailableImmediatelyThenTokensRefillAtTheRate() throws InterruptedException {
+        MailjetRateLimiter limiter = limiter(10, 2);
+
+        assertThat(limiter.acquire(EmailCategory.MARKETING, 0)).isTrue();
+        assertThat(limiter.acquire(EmailCategory.MARKETING, 0)).isTrue();
+        assertThat(limiter.acquire(EmailCategory.MARKETING, 0)).isFalse();
+
+        // One token every 100ms
+        long start = System.nanoTime();
+        assertThat(limiter.acquire(EmailCategory.MARKETING, 1000)).isTrue();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isBetween(50L, 500L);
+    }
+
+    @Test
+    void refillNeverExceedsBurst() throws InterruptedException {
+        MailjetRateLimiter limiter = limiter(100, 2);
+
+        Thread.sleep(100);
+
+        assertThat(limiter.acquire(EmailCategory.MARKETING, 0)).isTrue();
+        assertThat(limiter.acquire(EmailCategory.MARKETING, 0)).isTrue();
+        assertThat(limiter.acquire(EmailCategory.MARKETING, 0)).isFalse();
+    }
+
+    @Test
+    void rateLimitedResponseHalvesRateAndDropsBurst() throws InterruptedException {
+        MailjetRateLimiter limiter = limiter(4, 5);
+
+        limiter.onRateLimited();
+
+        assertThat(limiter.getCurrentRate()).isEqualTo(2);
+        assertThat(limiter.acquire(EmailCategory.MARKETING, 0)).isFalse();
+
+        limiter.onRateLimited();
+        limiter.onRateLimited();
+        assertThat(limiter.getCurrentRate()).isEqualTo(0.5);
+    }
+
+    @Test
+    void successfulCallsRecoverTowardsConfiguredRate() {
+        MailjetRateLimiter limiter = limiter(4, 5);
+        limiter.onRateLimited();
+
+        for (int i = 0; i < 100; i++) {
+            limiter.onSuccess();
+        }
+
+        assertThat(limiter.getCurrentRate()).isEqualTo(4);
+    }
+
+    @Test
+    void fullCategoryQueueIsRejected() throws InterruptedException {
+        MailjetRateLimiter limiter = new MailjetRateLimiter(new SimpleMeterRegistry(), 1, 1, 0.5, 0);
+
+        assertThat(limiter.acquire(EmailCategory.VERIFICATION, 1000)).isFalse();
+    }
+
+    private static MailjetRateLimiter limiter(double rate, double burst) {
+        return new MailjetRateLimiter(new SimpleMeterRegistry(), rate, burst, 0.5, 200);
+    }
+}
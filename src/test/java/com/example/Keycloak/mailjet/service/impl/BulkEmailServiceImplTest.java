@@ -0,0 +1,72 @@
+package com.example.Keycloak.mailjet.service.impl;
+
+import com.example.Keycloak.mailjet.model.dto.BulkEmailRecipientDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BulkEmailServiceImplTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void readsCsvWithHeaderAndQuotedValues() throws IOException {
+        List<BulkEmailRecipientDTO> recipients = read(true, """
+                email,name
+                ann@example.com,Ann
+                "bob@example.com","Smith, Bob"
+                carl@example.com,"Carl ""The Boss"" Jr"
+                dora@example.com,"Dora
+                Second Line"
+                """);
+
+        assertThat(recipients).extracting(BulkEmailRecipientDTO::getEmail)
+                .containsExactly("ann@example.com", "bob@example.com", "carl@example.com", "dora@example.com");
+        assertThat(recipients).extracting(BulkEmailRecipientDTO::getName)
+                .containsExactly("Ann", "Smith, Bob", "Carl \"The Boss\" Jr", "Dora\nSecond Line");
+    }
+
+    @Test
+    void csvHeaderIsOptionalAndNameMayBeMissing() throws IOException {
+        List<BulkEmailRecipientDTO> recipients = read(true, "ann@example.com\n\n  bob@example.com ,  \n");
+
+        assertThat(recipients).extracting(BulkEmailRecipientDTO::getEmail)
+                .containsExactly("ann@example.com", "bob@example.com");
+        assertThat(recipients).extracting(BulkEmailRecipientDTO::getName).containsOnlyNulls();
+    }
+
+    @Test
+    void emailHeaderIsOnlySkippedOnTheFirstRow() throws IOException {
+        List<BulkEmailRecipientDTO> recipients = read(true, "ann@example.com\nemail\n");
+
+        assertThat(recipients).extracting(BulkEmailRecipientDTO::getEmail).containsExactly("ann@example.com", "email");
+    }
+
+    @Test
+    void readsNdjsonAndReportsUnreadableLines() throws IOException {
+        List<BulkEmailRecipientDTO> recipients = read(false, """
+                {"email":"ann@example.com","name":"Ann"}
+
+                {"email":
+                {"email":"bob@example.com"}
+                """);
+
+        assertThat(recipients).hasSize(3);
+        assertThat(recipients.get(0).getName()).isEqualTo("Ann");
+        assertThat(recipients.get(1)).isNull();
+        assertThat(recipients.get(2).getEmail()).isEqualTo("bob@example.com");
+    }
+
+    private List<BulkEmailRecipientDTO> read(boolean csv, String content) throws IOException {
+        List<BulkEmailRecipientDTO> recipients = new ArrayList<>();
+        BulkEmailServiceImpl.readRecipients(new BufferedReader(new StringReader(content)), csv, objectMapper, recipients::add);
+        return recipients;
+    }
+}
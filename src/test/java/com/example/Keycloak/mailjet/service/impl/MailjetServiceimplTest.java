@@ -0,0 +1,78 @@
+package com.example.Keycloak.mailjet.service.impl;
+
+import com.example.Keycloak.mailjet.model.dto.EmailRequestDTO;
+import com.example.Keycloak.mailjet.ratelimit.EmailCategory;
+import com.example.Keycloak.mailjet.ratelimit.MailjetRateLimiter;
+import com.example.Keycloak.mailjet.service.EmailTemplateService;
+import com.example.Keycloak.model.entity.EmailOutboxMessage;
+import com.example.Keycloak.repository.EmailOutboxRepository;
+import com.mailjet.client.MailjetClient;
+import com.mailjet.client.MailjetResponse;
+import com.mongodb.client.result.UpdateResult;
+import org.json.JSONArray;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MailjetServiceimplTest {
+
+    private final MailjetClient mailjetClient = mock(MailjetClient.class);
+    private final EmailOutboxRepository emailOutboxRepository = mock(EmailOutboxRepository.class);
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final EmailTemplateService emailTemplateService = mock(EmailTemplateService.class);
+    private final MailjetRateLimiter mailjetRateLimiter = mock(MailjetRateLimiter.class);
+    private final MailjetServiceimpl mailjetService = new MailjetServiceimpl(
+            mailjetClient, emailOutboxRepository, mongoTemplate, emailTemplateService, mailjetRateLimiter);
+
+    @Test
+    void queuesNewEmail() {
+        assertThat(queue()).isTrue();
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), any(Class.class));
+    }
+
+    @Test
+    void requeuesWhenTheEarlierEmailHasFinished() {
+        when(emailOutboxRepository.insert(any(EmailOutboxMessage.class))).thenThrow(new DuplicateKeyException("dup"));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), any(Class.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        assertThat(queue()).isTrue();
+    }
+
+    @Test
+    void skipsWhileTheEarlierEmailIsStillPending() {
+        when(emailOutboxRepository.insert(any(EmailOutboxMessage.class))).thenThrow(new DuplicateKeyException("dup"));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), any(Class.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        assertThat(queue()).isFalse();
+    }
+
+    @Test
+    void rateLimiterOnlyRecoversOnSuccessfulSends() throws Exception {
+        MailjetResponse response = mock(MailjetResponse.class);
+        when(mailjetRateLimiter.acquire(any(), anyLong())).thenReturn(true);
+        when(mailjetClient.post(any())).thenReturn(response);
+        when(response.getStatus()).thenReturn(400);
+        when(response.getData()).thenReturn(new JSONArray());
+
+        mailjetService.sendEmail(new EmailRequestDTO("ann@example.com", "Hi", "Hello"));
+
+        verify(mailjetRateLimiter, never()).onSuccess();
+    }
+
+    private boolean queue() {
+        return mailjetService.queueEmail(EmailCategory.VERIFICATION, "verification:ann@example.com",
+                "ann@example.com", "Ann", "Verify", "text", "<p>html</p>");
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.Keycloak.service.impl;
+
+import com.example.Keycloak.model.dto.KeycloakEventAckDTO;
+import com.example.Keycloak.model.dto.KeycloakEventDTO;
+import com.example.Keycloak.service.KeycloakEventService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class KeycloakEventIngestionServiceImplTest {
+
+    private final KeycloakEventService keycloakEventService = mock(KeycloakEventService.class);
+    private final KeycloakEventIngestionServiceImpl ingestionService =
+            new KeycloakEventIngestionServiceImpl(keycloakEventService, new MockEnvironment());
+    private final List<String> processed = new CopyOnWriteArrayList<>();
+
+    private void start(long delayMillis) {
+        ReflectionTestUtils.setField(ingestionService, "queueCapacity", 10);
+        ReflectionTestUtils.setField(ingestionService, "processorThreads", 2);
+        ReflectionTestUtils.setField(ingestionService, "processingDelayMillis", delayMillis);
+        ReflectionTestUtils.setField(ingestionService, "shutdownTimeoutMillis", 5000L);
+        when(keycloakEventService.processEvent(any())).thenAnswer(invocation -> {
+            KeycloakEventDTO event = invocation.getArgument(0);
+            processed.add(event.getEventId());
+            return KeycloakEventAckDTO.accepted(event.getEventId());
+        });
+        ingestionService.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        ingestionService.stop();
+    }
+
+    @Test
+    void delayedEventsAreProcessedAfterTheDelay() throws InterruptedException {
+        start(100);
+
+        assertThat(ingestionService.submit(event("e-1")).getStatus()).isEqualTo(KeycloakEventAckDTO.ACCEPTED);
+        assertThat(processed).isEmpty();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (processed.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(processed).containsExactly("e-1");
+    }
+
+    @Test
+    void stopProcessesDelayedEventsAndReleasesTheirCapacity() throws InterruptedException {
+        start(60_000);
+
+        ingestionService.submit(event("e-1"));
+        ingestionService.submit(event("e-2"));
+        assertThat(ingestionService.getQueueDepth()).isEqualTo(2);
+
+        ingestionService.stop();
+
+        assertThat(processed).containsExactlyInAnyOrder("e-1", "e-2");
+        assertThat(ingestionService.getQueueDepth()).isZero();
+    }
+
+    @Test
+    void submitIsRefusedWhenCapacityIsExhausted() {
+        start(60_000);
+
+        for (int i = 0; i < 10; i++) {
+            ingestionService.submit(event("e-" + i));
+        }
+
+        assertThat(ingestionService.submit(event("e-10")).getStatus()).isEqualTo(KeycloakEventAckDTO.FAILED);
+    }
+
+    private static KeycloakEventDTO event(String eventId) {
+        return KeycloakEventDTO.builder().eventId(eventId).eventType("REGISTER").build();
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.Keycloak.service.impl;
+
+import com.example.Keycloak.exception.OrganizationAlreadyExistsException;
+import com.example.Keycloak.model.dto.OrganizationSetupDTO;
+import com.example.Keycloak.model.entity.Organization;
+import com.example.Keycloak.model.entity.UserAccountStatus;
+import com.example.Keycloak.service.OrganizationService;
+import com.example.Keycloak.service.UserAccountStatusService;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OrganizationSetupServiceImplTest {
+
+    private static final String USER_ID = "user-1";
+
+    private final OrganizationService organizationService = mock(OrganizationService.class);
+    private final UserAccountStatusService userAccountStatusService = mock(UserAccountStatusService.class);
+    private final OrganizationSetupServiceImpl setupService =
+            new OrganizationSetupServiceImpl(organizationService, userAccountStatusService);
+
+    private final OrganizationSetupDTO setup = OrganizationSetupDTO.builder().name("Acme").build();
+    private final Organization organization = Organization.builder().id("org-1").name("Acme").ownerKeycloakUserId(USER_ID).build();
+
+    @Test
+    void linksCreatedOrganization() {
+        when(organizationService.createOrganization(setup, USER_ID)).thenReturn(organization);
+        when(userAccountStatusService.updateOrganizationSetup(USER_ID, "org-1")).thenReturn(status("org-1"));
+
+        assertThat(setupService.completeSetup(USER_ID, setup)).isSameAs(organization);
+        verify(organizationService, never()).deleteOrganization(any());
+    }
+
+    @Test
+    void keepsCreatedOrganizationWhenLinkFails() {
+        when(organizationService.createOrganization(setup, USER_ID)).thenReturn(organization);
+        when(userAccountStatusService.updateOrganizationSetup(USER_ID, "org-1")).thenThrow(new IllegalStateException("write failed"));
+
+        assertThatThrownBy(() -> setupService.completeSetup(USER_ID, setup)).hasMessage("write failed");
+        verify(organizationService, never()).deleteOrganization(any());
+    }
+
+    @Test
+    void failsWithoutDeletingWhenStatusIsMissing() {
+        when(organizationService.createOrganization(setup, USER_ID)).thenReturn(organization);
+        when(userAccountStatusService.updateOrganizationSetup(USER_ID, "org-1")).thenReturn(null);
+
+        assertThatThrownBy(() -> setupService.completeSetup(USER_ID, setup)).isInstanceOf(IllegalStateException.class);
+        verify(organizationService, never()).deleteOrganization(any());
+    }
+
+    @Test
+    void retryAfterFailedLinkResumesTheSameOrganization() {
+        Organization updated = Organization.builder().id("org-1").name("Acme").ownerKeycloakUserId(USER_ID).build();
+        when(organizationService.createOrganization(setup, USER_ID))
+                .thenReturn(organization)
+                .thenThrow(new OrganizationAlreadyExistsException("Acme", null));
+        when(organizationService.findByOwner(USER_ID)).thenReturn(organization);
+        when(organizationService.updateOrganization("org-1", setup)).thenReturn(updated);
+        when(userAccountStatusService.updateOrganizationSetup(USER_ID, "org-1"))
+                .thenThrow(new IllegalStateException("write failed"))
+                .thenReturn(status("org-1"));
+
+        assertThatThrownBy(() -> setupService.completeSetup(USER_ID, setup)).hasMessage("write failed");
+        assertThat(setupService.completeSetup(USER_ID, setup)).isSameAs(updated);
+        verify(organizationService, never()).deleteOrganization(any());
+    }
+
+    @Test
+    void resumesWithOrganizationLeftByEarlierAttemptAndNeverDeletesIt() {
+        Organization updated = Organization.builder().id("org-1").name("Acme").build();
+        when(organizationService.createOrganization(setup, USER_ID)).thenThrow(new OrganizationAlreadyExistsException("Acme", null));
+        when(organizationService.findByOwner(USER_ID)).thenReturn(organization);
+        when(organizationService.updateOrganization("org-1", setup)).thenReturn(updated);
+        when(userAccountStatusService.updateOrganizationSetup(USER_ID, "org-1")).thenThrow(new IllegalStateException("write failed"));
+
+        assertThatThrownBy(() -> setupService.completeSetup(USER_ID, setup)).hasMessage("write failed");
+        verify(organizationService, never()).deleteOrganization(any());
+    }
+
+    @Test
+    void failsWhenResumedOrganizationDisappears() {
+        when(organizationService.createOrganization(setup, USER_ID)).thenThrow(new OrganizationAlreadyExistsException("Acme", null));
+        when(organizationService.findByOwner(USER_ID)).thenReturn(organization);
+        when(organizationService.updateOrganization("org-1", setup)).thenReturn(null);
+
+        assertThatThrownBy(() -> setupService.completeSetup(USER_ID, setup)).isInstanceOf(IllegalStateException.class);
+        verify(userAccountStatusService, never()).updateOrganizationSetup(any(), any());
+    }
+
+    private static UserAccountStatus status(String organizationId) {
+        return UserAccountStatus.builder().keycloakUserId(USER_ID).organizationId(organizationId).build();
+    }
+}
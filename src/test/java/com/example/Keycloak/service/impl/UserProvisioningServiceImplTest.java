@@ -0,0 +1,202 @@
+package com.example.Keycloak.service.impl;
+
+import com.example.Keycloak.config.KeycloakAdminResources;
+import com.example.Keycloak.exception.UploadTooLargeException;
+import com.example.Keycloak.model.dto.UserProvisioningResultDTO;
+import com.example.Keycloak.model.dto.UserProvisioningSummaryDTO;
+import com.example.Keycloak.model.dto.UserRegistrationDTO;
+import com.example.Keycloak.service.KeycloakService;
+import com.example.Keycloak.service.UserProvisioningService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.keycloak.admin.client.resource.RealmResource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserProvisioningServiceImplTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final KeycloakService keycloakService = mock(KeycloakService.class);
+    private final KeycloakAdminResources keycloakAdminResources = mock(KeycloakAdminResources.class);
+    private final UserProvisioningServiceImpl provisioningService = new UserProvisioningServiceImpl(
+            keycloakService, keycloakAdminResources,
+            Validation.buildDefaultValidatorFactory().getValidator(), objectMapper, new SimpleMeterRegistry());
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(provisioningService, "parallelism", 2);
+        ReflectionTestUtils.setField(provisioningService, "maxConcurrentRuns", 1);
+        ReflectionTestUtils.setField(provisioningService, "maxUploadSize", DataSize.ofBytes(64));
+        ReflectionTestUtils.setField(provisioningService, "partialImportBatchSize", 500);
+        ReflectionTestUtils.setField(provisioningService, "realm", "test");
+        provisioningService.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        provisioningService.stop();
+    }
+
+    @Test
+    void readsCsvWithHeaderAndQuotedValues() throws Exception {
+        List<UserProvisioningServiceImpl.Row> rows = read(true, """
+                firstName,lastName,email,username,password
+                Ann,Lee,ann@example.com,ann,secret123
+
+                "Bob, Jr","O""Neil",bob@example.com,bob,"pa,ss ""word""\"
+                "Multi
+                Line",Lee,carl@example.com,carl,secret123
+                """);
+
+        assertThat(rows).extracting(UserProvisioningServiceImpl.Row::lineNumber).containsExactly(2L, 4L, 5L);
+        assertThat(rows).extracting(row -> row.user().getFirstName()).containsExactly("Ann", "Bob, Jr", "Multi\nLine");
+        assertThat(rows.get(1).user().getLastName()).isEqualTo("O\"Neil");
+        assertThat(rows.get(1).user().getPassword()).isEqualTo("pa,ss \"word\"");
+    }
+
+    @Test
+    void keepsUnquotedCommasAndSpacesInCsvPassword() throws Exception {
+        List<UserProvisioningServiceImpl.Row> rows = read(true, " Ann , Lee ,ann@example.com,ann, pass,word \n");
+
+        UserRegistrationDTO user = rows.get(0).user();
+        assertThat(user.getFirstName()).isEqualTo("Ann");
+        assertThat(user.getLastName()).isEqualTo("Lee");
+        assertThat(user.getPassword()).isEqualTo(" pass,word ");
+    }
+
+    @Test
+    void reportsShortAndUnreadableCsvRows() throws Exception {
+        List<UserProvisioningServiceImpl.Row> rows = read(true, """
+                Ann,Lee,ann@example.com
+                Bob,Lee,bob@example.com,bob,"unclosed
+                Carl,Lee,carl@example.com,carl,secret123
+                """);
+
+        assertThat(rows).hasSize(2);
+        assertThat(rows).extracting(UserProvisioningServiceImpl.Row::user).containsOnlyNulls();
+        assertThat(rows.get(0).error()).startsWith("Expected");
+        assertThat(rows.get(1).error()).isEqualTo("Unreadable row");
+    }
+
+    @Test
+    void readsNdjsonAndReportsUnreadableLines() throws Exception {
+        List<UserProvisioningServiceImpl.Row> rows = read(false, """
+                {"firstName":"Ann","email":"ann@example.com","username":"ann"}
+
+                {"firstName":
+                null
+                """);
+
+        assertThat(rows).extracting(UserProvisioningServiceImpl.Row::lineNumber).containsExactly(1L, 3L, 4L);
+        assertThat(rows.get(0).user().getUsername()).isEqualTo("ann");
+        assertThat(rows.subList(1, 3)).extracting(UserProvisioningServiceImpl.Row::error).containsOnly("Unreadable row");
+    }
+
+    @Test
+    void oversizedUploadIsRejectedAndFreesItsSlot() throws Exception {
+        byte[] upload = new byte[65];
+
+        assertThatThrownBy(() -> provisioningService.prepare(new ByteArrayInputStream(upload), false, false))
+                .isInstanceOf(UploadTooLargeException.class);
+        provisioningService.prepare(new ByteArrayInputStream(new byte[0]), false, false).discard();
+    }
+
+    @Test
+    void discardFreesTheSlotOnce() throws Exception {
+        UserProvisioningService.Provisioning first = provisioningService.prepare(upload(), false, false);
+
+        assertThatThrownBy(() -> provisioningService.prepare(upload(), false, false))
+                .isInstanceOf(RejectedExecutionException.class);
+
+        first.discard();
+        first.discard();
+        UserProvisioningService.Provisioning second = provisioningService.prepare(upload(), false, false);
+        assertThatThrownBy(() -> provisioningService.prepare(upload(), false, false))
+                .isInstanceOf(RejectedExecutionException.class);
+        assertThatThrownBy(() -> first.run(result -> { })).isInstanceOf(IllegalStateException.class);
+        second.discard();
+    }
+
+    @Test
+    void runDiscardsTheUpload() throws Exception {
+        List<String> statuses = new ArrayList<>();
+        UserProvisioningService.Provisioning provisioning =
+                provisioningService.prepare(new ByteArrayInputStream("{\"firstName\":\n".getBytes(StandardCharsets.UTF_8)), false, false);
+
+        assertThat(provisioning.run(result -> statuses.add(result.getStatus())).getInvalid()).isEqualTo(1);
+        assertThat(statuses).hasSize(1);
+        assertThatCode(() -> provisioningService.prepare(upload(), false, false).discard()).doesNotThrowAnyException();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void partialImportMatchesMixedCaseUsernamesAndRejectsDuplicates() throws Exception {
+        ReflectionTestUtils.setField(provisioningService, "maxUploadSize", DataSize.ofKilobytes(4));
+        RealmResource realm = mock(RealmResource.class);
+        Response response = mock(Response.class);
+        when(keycloakAdminResources.realm("test")).thenReturn(realm);
+        when(keycloakAdminResources.timed(eq("partialImport"), any(Supplier.class)))
+                .thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(1)).get());
+        when(realm.partialImport(any())).thenReturn(response);
+        when(response.getStatus()).thenReturn(200);
+        // Keycloak names added users as sent and skipped ones as stored
+        when(response.readEntity(String.class)).thenReturn("""
+                {"results":[
+                  {"action":"ADDED","resourceName":"AnnLee","id":"id-1"},
+                  {"action":"SKIPPED","resourceName":"boblee","id":"id-2"}
+                ]}""");
+        String rows = """
+                {"firstName":"Ann","lastName":"Lee","email":"ann@example.com","username":"AnnLee","password":"secret123"}
+                {"firstName":"Bob","lastName":"Lee","email":"bob@example.com","username":"BobLee","password":"secret123"}
+                {"firstName":"Ann","lastName":"Lee","email":"ann2@example.com","username":"annlee","password":"secret123"}
+                """;
+        Map<String, String> statuses = new HashMap<>();
+
+        UserProvisioningSummaryDTO summary = provisioningService
+                .prepare(new ByteArrayInputStream(rows.getBytes(StandardCharsets.UTF_8)), false, true)
+                .run(result -> statuses.put(result.getRow() + ":" + result.getUsername(), result.getStatus()));
+
+        assertThat(statuses).containsOnly(
+                Map.entry("1:AnnLee", UserProvisioningResultDTO.CREATED),
+                Map.entry("2:BobLee", UserProvisioningResultDTO.EXISTS),
+                Map.entry("3:annlee", UserProvisioningResultDTO.INVALID));
+        assertThat(summary.getRows()).isEqualTo(3);
+        assertThat(summary.getCreated() + summary.getExisting() + summary.getInvalid() + summary.getFailed()).isEqualTo(3);
+        verify(keycloakService).sendVerificationEmail("id-1", "ann@example.com", "Ann");
+    }
+
+    private static ByteArrayInputStream upload() {
+        return new ByteArrayInputStream("{}\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<UserProvisioningServiceImpl.Row> read(boolean csv, String content) throws Exception {
+        List<UserProvisioningServiceImpl.Row> rows = new ArrayList<>();
+        UserProvisioningServiceImpl.readRows(new BufferedReader(new StringReader(content)), csv, objectMapper, rows::add);
+        return rows;
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.Keycloak.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class VerificationTokenServiceImplTest {
+
+    private static final String OLD_KEY = "k1:0123456789abcdef0123456789abcdef";
+    private static final String NEW_KEY = "k2:fedcba9876543210fedcba9876543210";
+
+    @Test
+    void issuedTokenIsConsumedForItsUser() {
+        VerificationTokenServiceImpl service = service(OLD_KEY, Duration.ofHours(1));
+        List<String> users = new ArrayList<>();
+
+        assertThat(service.consume(service.issue("user-1"), users::add)).isTrue();
+        assertThat(users).containsExactly("user-1");
+    }
+
+    @Test
+    void tamperedOrMalformedTokensAreRejected() {
+        VerificationTokenServiceImpl service = service(OLD_KEY, Duration.ofHours(1));
+        String token = service.issue("user-1");
+        String[] parts = token.split("\\.");
+        String otherUser = String.join(".", parts[0], "user-2", parts[2], parts[3], parts[4]);
+        String otherSignature = token.substring(0, token.lastIndexOf('.') + 1)
+                + Base64.getUrlEncoder().withoutPadding().encodeToString(new byte[32]);
+
+        assertThat(service.consume(otherUser, userId -> true)).isFalse();
+        assertThat(service.consume(otherSignature, userId -> true)).isFalse();
+        assertThat(service.consume(token + ".", userId -> true)).isFalse();
+        assertThat(service.consume("not-a-token", userId -> true)).isFalse();
+        assertThat(service.consume(null, userId -> true)).isFalse();
+    }
+
+    @Test
+    void expiredTokenIsRejected() throws Exception {
+        VerificationTokenServiceImpl service = service(OLD_KEY, Duration.ofHours(1));
+        long now = System.currentTimeMillis() / 1000;
+
+        assertThat(service.consume(signed("k1.user-1." + (now + 60) + ".bm9uY2U"), userId -> true)).isTrue();
+        assertThat(service.consume(signed("k1.user-1." + (now - 60) + ".b3RoZXI"), userId -> true)).isFalse();
+    }
+
+    @Test
+    void tokensOfRetiredSigningKeyStillVerifyAfterRotation() {
+        VerificationTokenServiceImpl before = service(OLD_KEY, Duration.ofHours(1));
+        VerificationTokenServiceImpl rotated = service(NEW_KEY + "," + OLD_KEY, Duration.ofHours(1));
+        VerificationTokenServiceImpl dropped = service(NEW_KEY, Duration.ofHours(1));
+        String oldToken = before.issue("user-1");
+
+        assertThat(rotated.issue("user-1")).startsWith("k2.");
+        assertThat(rotated.consume(oldToken, userId -> true)).isTrue();
+        assertThat(dropped.consume(oldToken, userId -> true)).isFalse();
+    }
+
+    @Test
+    void replayAfterSuccessDoesNotRunTheActionAgain() {
+        VerificationTokenServiceImpl service = service(OLD_KEY, Duration.ofHours(1));
+        String token = service.issue("user-1");
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThat(service.consume(token, userId -> calls.incrementAndGet() > 0)).isTrue();
+        assertThat(service.consume(token, userId -> calls.incrementAndGet() > 0)).isTrue();
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void failedUseCanBeRetried() {
+        VerificationTokenServiceImpl service = service(OLD_KEY, Duration.ofHours(1));
+        String token = service.issue("user-1");
+
+        assertThat(service.consume(token, userId -> false)).isFalse();
+        assertThat(service.consume(token, userId -> true)).isTrue();
+    }
+
+    @Test
+    void replayDuringFirstUseGetsItsOutcome() throws Exception {
+        VerificationTokenServiceImpl service = service(OLD_KEY, Duration.ofHours(1));
+        String token = service.issue("user-1");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(() -> service.consume(token, userId -> {
+            calls.incrementAndGet();
+            started.countDown();
+            try {
+                finish.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<Boolean> replay = CompletableFuture.supplyAsync(() -> service.consume(token, userId -> {
+            calls.incrementAndGet();
+            return true;
+        }));
+        Thread.sleep(100);
+        assertThat(replay).isNotDone();
+
+        finish.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isFalse();
+        assertThat(replay.get(5, TimeUnit.SECONDS)).isFalse();
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void missingKeysFailStartupOutsideDevProfile() {
+        MockEnvironment environment = new MockEnvironment();
+        environment.setActiveProfiles("keycloak");
+
+        assertThatThrownBy(() -> new VerificationTokenServiceImpl(new SimpleMeterRegistry(), environment, "", Duration.ofHours(1), 100))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void devProfileFallsBackToRandomKey() {
+        MockEnvironment environment = new MockEnvironment();
+        environment.setActiveProfiles("dev");
+        VerificationTokenServiceImpl service =
+                new VerificationTokenServiceImpl(new SimpleMeterRegistry(), environment, "", Duration.ofHours(1), 100);
+
+        assertThat(service.consume(service.issue("user-1"), userId -> true)).isTrue();
+    }
+
+    // Signs a hand-made payload with OLD_KEY's secret
+    private static String signed(String payload) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(OLD_KEY.substring(3).getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return payload + "." + Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(mac.doFinal(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static VerificationTokenServiceImpl service(String keys, Duration ttl) {
+        return new VerificationTokenServiceImpl(new SimpleMeterRegistry(), new MockEnvironment(), keys, ttl, 100);
+    }
+}